@@ -0,0 +1,210 @@
+package net.jalg.hawkj;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import net.jalg.hawkj.util.Charsets;
+
+/**
+ * A CharSequence over header bytes.
+ *
+ * Each byte is one char, interpreted as ISO-8859-1, which covers the ASCII
+ * header syntax without decoding. {@link BaseStringWriter} copies the
+ * original bytes of such a sequence, so values are fed into MAC computation
+ * exactly as they were received.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+final class AsciiSequence implements CharSequence {
+
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGHS = 0x8080808080808080L;
+	private static final long DQUOTES = ONES * '"';
+	private static final long BACKSLASHES = ONES * '\\';
+	private static final long DELS = ONES * 0x7F;
+	private static final long SPACES = ONES * ' ';
+
+	private byte[] array;
+	private ByteBuffer buffer;
+	private int offset;
+	private int length;
+
+	/**
+	 * Little endian view of array or buffer for reading eight bytes at once,
+	 * kept while the sequence is reset to the same array or buffer. A view of
+	 * a buffer spans its whole capacity, so it stays valid when the buffer is
+	 * parsed again with another position or limit.
+	 */
+	private ByteBuffer words;
+	private Object wordsSource;
+
+	AsciiSequence() {
+		this.array = new byte[0];
+	}
+
+	AsciiSequence(byte[] array, int offset, int length) {
+		reset(array, offset, length);
+	}
+
+	/**
+	 * A sequence over the bytes between position and limit. The buffer's
+	 * position is not changed.
+	 */
+	AsciiSequence(ByteBuffer buffer) {
+		reset(buffer);
+	}
+
+	/**
+	 * Point this sequence to other bytes, for reuse.
+	 */
+	AsciiSequence reset(byte[] array, int offset, int length) {
+		if (array == null) {
+			throw new IllegalArgumentException("Null bytes not allowed");
+		}
+		if (offset < 0 || length < 0 || offset > array.length - length) {
+			throw new IndexOutOfBoundsException("Offset " + offset
+					+ " and length " + length + " out of bounds");
+		}
+		this.array = array;
+		this.buffer = null;
+		this.offset = offset;
+		this.length = length;
+		return this;
+	}
+
+	/**
+	 * Point this sequence to the bytes between position and limit of a
+	 * buffer, for reuse.
+	 */
+	AsciiSequence reset(ByteBuffer buffer) {
+		if (buffer == null) {
+			throw new IllegalArgumentException("Null buffer not allowed");
+		}
+		if (buffer.hasArray()) {
+			this.array = buffer.array();
+			this.buffer = null;
+			this.offset = buffer.arrayOffset() + buffer.position();
+		} else {
+			this.array = null;
+			this.buffer = buffer;
+			this.offset = buffer.position();
+		}
+		this.length = buffer.remaining();
+		return this;
+	}
+
+	private AsciiSequence(byte[] array, ByteBuffer buffer, int offset,
+			int length) {
+		this.array = array;
+		this.buffer = buffer;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("Index: " + index);
+		}
+		if (array != null) {
+			return (char) (array[offset + index] & 0xFF);
+		}
+		return (char) (buffer.get(offset + index) & 0xFF);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > length || start > end) {
+			throw new IndexOutOfBoundsException("Range: " + start + ", " + end);
+		}
+		return new AsciiSequence(array, buffer, offset + start, end - start);
+	}
+
+	/**
+	 * Copy the original bytes of [start, end) into dst.
+	 */
+	void copyTo(int start, int end, byte[] dst, int dstOffset) {
+		if (array != null) {
+			System.arraycopy(array, offset + start, dst, dstOffset, end - start);
+		} else {
+			for (int i = start; i < end; i++) {
+				dst[dstOffset++] = buffer.get(offset + i);
+			}
+		}
+	}
+
+	/**
+	 * Find the first byte in [from, to) that is not plain qdtext: '"', '\',
+	 * DEL or a control character (including HTAB, which the caller has to
+	 * accept itself).
+	 *
+	 * The bytes are examined eight at a time: every byte of a long is
+	 * compared with the special values using the carry tricks for finding
+	 * zero bytes in a word, and the lowest flagged byte is the first match.
+	 * Bytes above such a match may be flagged wrongly by borrows, which is
+	 * irrelevant for finding the first one.
+	 *
+	 * @return The index of the first special byte, or to if there is none.
+	 */
+	int indexOfQuotedSpecial(int from, int to) {
+		int i = from;
+		if (to - i >= 8) {
+			ByteBuffer w = words();
+			do {
+				long found = specials(w.getLong(offset + i));
+				if (found != 0) {
+					return i + (Long.numberOfTrailingZeros(found) >>> 3);
+				}
+				i += 8;
+			} while (to - i >= 8);
+		}
+		for (; i < to; i++) {
+			char c = charAt(i);
+			if (c == '"' || c == '\\' || c < ' ' || c == 0x7F) {
+				return i;
+			}
+		}
+		return to;
+	}
+
+	/**
+	 * @return The high bit of each byte of v that may be special, exact for
+	 *         the lowest one.
+	 */
+	private static long specials(long v) {
+		long dq = v ^ DQUOTES;
+		long bs = v ^ BACKSLASHES;
+		long del = v ^ DELS;
+		return ((dq - ONES) & ~dq | (bs - ONES) & ~bs | (del - ONES) & ~del
+				| (v - SPACES) & ~v) & HIGHS;
+	}
+
+	private ByteBuffer words() {
+		Object source = array != null ? array : buffer;
+		if (wordsSource != source) {
+			ByteBuffer w = array != null ? ByteBuffer.wrap(array) : buffer
+					.duplicate();
+			w.clear();
+			words = w.order(ByteOrder.LITTLE_ENDIAN);
+			wordsSource = source;
+		}
+		return words;
+	}
+
+	@Override
+	public String toString() {
+		if (array != null) {
+			return new String(array, offset, length, Charsets.ISO_8859_1);
+		}
+		byte[] b = new byte[length];
+		copyTo(0, length, b, 0);
+		return new String(b, Charsets.ISO_8859_1);
+	}
+
+}
@@ -3,83 +3,468 @@ package net.jalg.hawkj;
 
 
 /** A parser class for HTTP Authorization and WWW-Authenticate headers.
- * 
- * <b>Note</b>: This is at the moment only a very limited parser. See 'Open Issues' section in README.
- * 
- * @todo This class needs to become a real parser.
- * 
+ *
+ * The parser is a single pass tokenizer for the credentials and challenge
+ * syntax of <a href="http://tools.ietf.org/html/rfc7235#section-2.1">RFC 7235</a>:
+ *
+ * <pre>
+ * auth-scheme [ 1*SP ( token68 / #auth-param ) ]
+ * auth-param = token BWS "=" BWS ( token / quoted-string )
+ * </pre>
+ *
+ * Quoted-strings may contain commas and escaped characters, which are
+ * unescaped before they are passed to the builder. For robustness, unquoted
+ * parameter values may also contain the '/' and '=' characters of token68 so
+ * that unquoted Base64 values are accepted. Empty list elements are ignored.
+ * <p>
+ * The parser reports the positions of the parsed elements to an
+ * {@link AuthDirectiveRangeBuilder}, which does not allocate anything. When
+ * used with an {@link AuthDirectiveBuilder}, only the scheme, the parameter
+ * names, and the values passed to the builder are allocated.
+ *
  * @author Jan Algermissen, http://jalg.net
  *
  */
 public class AuthDirectiveParser {
-	
-	// FIXME add a 'have token flag' to enforce just one token68
-	private AuthDirectiveBuilder builder;
-	private String headerValue;
-	
-	public AuthDirectiveParser(String headerValue,AuthDirectiveBuilder builder) {
+
+	private static final char SP = ' ';
+	private static final char HTAB = '\t';
+	private static final char COMMA = ',';
+	private static final char EQUALS = '=';
+	private static final char DQUOTE = '"';
+	private static final char BACKSLASH = '\\';
+
+	/**
+	 * Whether the content of quoted-strings in header values given as bytes
+	 * is scanned eight bytes at a time. Only runs of plain qdtext are skipped
+	 * this way, so only long quoted values such as ext can benefit. Schemes,
+	 * parameter names, unquoted values, delimiters and all String input are
+	 * scanned one char at a time. Set the system property
+	 * net.jalg.hawkj.scalarScanning to true to scan quoted-strings byte by
+	 * byte as well.
+	 */
+	private static final boolean WORDWISE_SCANNING = !Boolean
+			.getBoolean("net.jalg.hawkj.scalarScanning");
+
+	private static final int TCHAR = 1;
+	private static final int TOKEN68 = 2;
+	private static final byte[] CHAR_CLASSES = new byte[128];
+
+	static {
+		for (char c = '0'; c <= '9'; c++) {
+			CHAR_CLASSES[c] = TCHAR | TOKEN68;
+		}
+		for (char c = 'a'; c <= 'z'; c++) {
+			CHAR_CLASSES[c] = TCHAR | TOKEN68;
+			CHAR_CLASSES[c - 'a' + 'A'] = TCHAR | TOKEN68;
+		}
+		for (char c : "!#$%&'*^`|".toCharArray()) {
+			CHAR_CLASSES[c] = TCHAR;
+		}
+		for (char c : "-._~+".toCharArray()) {
+			CHAR_CLASSES[c] = TCHAR | TOKEN68;
+		}
+		CHAR_CLASSES['/'] = TOKEN68;
+	}
+
+	private AuthDirectiveRangeBuilder builder;
+	private CharSequence headerValue;
+
+	/** Whether the quoted-string parsed last contains quoted-pairs. */
+	private boolean escaped;
+
+	/** Whether exceptions are created without stack trace. */
+	private boolean stackless;
+
+	private AuthHeaderLimits limits = AuthHeaderLimits.getDefault();
+
+	public AuthDirectiveParser(CharSequence headerValue,AuthDirectiveBuilder builder) {
+		this(headerValue, new StringAdapter(builder));
+	}
+
+	public AuthDirectiveParser(CharSequence headerValue,AuthDirectiveRangeBuilder builder) {
 		this.builder = builder;
 		if (headerValue == null) {
 			throw new IllegalArgumentException("Unable to parse a null header value");
 		}
 		this.headerValue = headerValue;
 	}
-	
-	// Note to self:
-	// change implementation to work like this one:
-	// http://javasourcecode.org/html/open-source/jdk/jdk-6u23/sun/net/www/protocol/http/AuthenticationHeader.java.html
-	// http://javasourcecode.org/html/open-source/jdk/jdk-6u23/sun/net/www/HeaderParser.java.html
 
-	
+	/**
+	 * Prepare the parser for parsing another header value with the same
+	 * builder, so that parsers can be reused.
+	 *
+	 * @param headerValue
+	 */
+	public void reset(CharSequence headerValue) {
+		if (headerValue == null) {
+			throw new IllegalArgumentException("Unable to parse a null header value");
+		}
+		this.headerValue = headerValue;
+		this.escaped = false;
+	}
+
+	/**
+	 * Create exceptions without stack trace, for callers that catch them
+	 * and report a {@link HawkResult} instead.
+	 */
+	void setStackless(boolean stackless) {
+		this.stackless = stackless;
+	}
+
+	/**
+	 * Set the limits for the work spent on a header value. Parsers use the
+	 * limits that are the default when they are created unless set otherwise.
+	 *
+	 * @param limits
+	 */
+	public void setLimits(AuthHeaderLimits limits) {
+		if (limits == null) {
+			throw new IllegalArgumentException("Null limits not allowed");
+		}
+		this.limits = limits;
+	}
+
+	public AuthHeaderLimits getLimits() {
+		return limits;
+	}
+
 	public void parse() throws AuthHeaderParsingException {
 
-		String[] parts = headerValue.trim().split("\\s+", 2);
-		if (parts.length < 1) {
-			throw new AuthHeaderParsingException("Unable to split scheme and other part in " + headerValue);
+		final CharSequence s = headerValue;
+		final int len = s.length();
+		if (len > limits.getMaxHeaderLength()) {
+			throw reject(AuthHeaderLimits.Violation.HEADER_LENGTH, "Header value of length " + len + " exceeds the maximum length " + limits.getMaxHeaderLength());
+		}
+
+		int i = skipWhitespace(s, 0, len);
+		int start = i;
+		i = skip(s, i, len, TCHAR);
+		if (i == start) {
+			throw error("Unable to find auth scheme in " + Util.excerpt(s, 0, len));
 		}
+		if (i < len && !isWhitespace(s.charAt(i))) {
+			throw error("Invalid character '" + s.charAt(i) + "' after auth scheme at position " + i);
+		}
+		builder.scheme(s, start, i);
 
-		builder.scheme(parts[0]);
-		
-		if(parts.length == 1) {
+		i = skipWhitespace(s, i, len);
+		if (i == len) {
 			return;
 		}
-		
-		// FIXME: handle optional, one-time token
-
-		for (String kv : parts[1].split(",")) {
-			String[] kva = kv.trim().split("=", 2);
-			if (!(kva.length == 2)) {
-				throw new AuthHeaderParsingException("Unable to split " + kv + " into parameter key and value in " + headerValue);
-			}
-			if (kva[1].startsWith("\"")) {
-				kva[1] = kva[1].substring(1, kva[1].length() - 1);
-			}
-			builder.param(kva[0], kva[1]);
-		}
-	}
-
-//	public String toHeaderValueString() {
-//		StringBuilder sb = new StringBuilder(name);
-//		boolean first = true;
-//		if(token != null) {
-//			sb.append(" ");
-//			sb.append(token);
-//			first = false;
-//		}
-//		for(String key : params.keySet()) {
-//			if(first) {
-//				sb.append(" ");
-//				first = false;
-//			} else {
-//				sb.append(",");
-//			}
-//			sb.append(key);
-//			sb.append("=\"");
-//			sb.append(params.get(key));
-//			sb.append("\"");
-//			
-//		}
-//		return sb.toString();
-//	}
-
-}
\ No newline at end of file
+
+		/*
+		 * A token68 is the only element after the scheme. It is distinguished
+		 * from a parameter by not being followed by anything but its '='
+		 * padding.
+		 */
+		int end = skip(s, i, len, TOKEN68);
+		if (end > i) {
+			while (end < len && s.charAt(end) == EQUALS) {
+				end++;
+			}
+			if (skipWhitespace(s, end, len) == len) {
+				builder.token(s, i, end);
+				return;
+			}
+		}
+
+		int params = 0;
+		while (i < len) {
+			// Skip empty list elements
+			while (i < len && s.charAt(i) == COMMA) {
+				i = skipWhitespace(s, i + 1, len);
+			}
+			if (i == len) {
+				break;
+			}
+			if (++params > limits.getMaxParameters()) {
+				throw reject(AuthHeaderLimits.Violation.PARAMETER_COUNT, "More than " + limits.getMaxParameters() + " parameters at position " + i);
+			}
+
+			int keyStart = i;
+			i = skip(s, i, len, TCHAR);
+			int keyEnd = i;
+			if (keyEnd == keyStart) {
+				throw error("Expected parameter name at position " + i);
+			}
+
+			i = skipWhitespace(s, i, len);
+			if (i == len || s.charAt(i) != EQUALS) {
+				throw error("Unable to split " + Util.excerpt(s, keyStart, keyEnd) + " at position " + keyStart + " into parameter key and value");
+			}
+			i = skipWhitespace(s, i + 1, len);
+
+			/*
+			 * Values are only scanned up to one character beyond their
+			 * maximum length.
+			 */
+			int max = limits.maxValueLength(s, keyStart, keyEnd);
+			if (i < len && s.charAt(i) == DQUOTE) {
+				start = i + 1;
+				end = parseQuotedString(s, start, bound(start, max, len));
+				i = end + 1;
+			} else {
+				start = i;
+				int bound = bound(start, max, len);
+				i = skip(s, i, bound, TCHAR | TOKEN68);
+				while (i < bound && s.charAt(i) == EQUALS) {
+					i++;
+				}
+				if (i == start) {
+					throw error("Missing value of parameter " + Util.excerpt(s, keyStart, keyEnd) + " at position " + i);
+				}
+				end = i;
+				escaped = false;
+			}
+			if (end - start > max) {
+				throw reject(AuthHeaderLimits.Violation.VALUE_LENGTH, "Value of parameter " + Util.excerpt(s, keyStart, keyEnd) + " exceeds the maximum length " + max);
+			}
+			builder.param(s, keyStart, keyEnd, start, end, escaped);
+
+			i = skipWhitespace(s, i, len);
+			if (i < len && s.charAt(i) != COMMA) {
+				throw error("Expected ',' at position " + i);
+			}
+		}
+	}
+
+	/**
+	 * Find the challenge with a given scheme in a WWW-Authenticate header
+	 * value that may contain several challenges, e.g.
+	 * <code>Bearer realm="a, b", Hawk ts="1", tsm="...", Basic realm="c"</code>.
+	 *
+	 * Challenges are told apart by their scheme: a list element that is a
+	 * token not followed by '=' starts a new challenge. The parameters of
+	 * other challenges are skipped without reporting them anywhere, only
+	 * quoted-strings are followed so that their commas do not end an element.
+	 *
+	 * @param s
+	 *            The header value
+	 * @param scheme
+	 *            The scheme in lower case
+	 * @param stackless
+	 *            Whether exceptions are created without stack trace
+	 * @return Start and end of the challenge packed into a long as
+	 *         <code>start &lt;&lt; 32 | end</code>, or -1 if there is no
+	 *         challenge with the scheme.
+	 * @throws AuthHeaderParsingException
+	 *             If a quoted-string is not terminated or an element does not
+	 *             start with a token.
+	 */
+	static long findChallenge(CharSequence s, String scheme, boolean stackless) throws AuthHeaderParsingException {
+		final int len = s.length();
+		int found = -1;
+		int elementEnd = 0;
+		int i = 0;
+		while (true) {
+			while (i < len && (s.charAt(i) == COMMA || isWhitespace(s.charAt(i)))) {
+				i++;
+			}
+			if (i == len) {
+				break;
+			}
+			int start = i;
+			i = skip(s, i, len, TCHAR);
+			int end = i;
+			if (end == start) {
+				throw AuthHeaderParsingException.create(stackless, "Expected scheme or parameter name at position " + i, null);
+			}
+			int j = skipWhitespace(s, i, len);
+			if (j < len && s.charAt(j) == EQUALS) {
+				// auth-param of the current challenge
+				i = skipWhitespace(s, j + 1, len);
+				if (i < len && s.charAt(i) == DQUOTE) {
+					i = skipQuotedString(s, i + 1, len, stackless) + 1;
+				} else {
+					i = skip(s, i, len, TCHAR | TOKEN68);
+					while (i < len && s.charAt(i) == EQUALS) {
+						i++;
+					}
+				}
+				elementEnd = i;
+				continue;
+			}
+			// A new challenge
+			if (found >= 0) {
+				return (long) found << 32 | elementEnd;
+			}
+			if (Util.regionMatchesIgnoreCase(s, start, end, scheme)) {
+				found = start;
+			}
+			elementEnd = end;
+			i = j;
+			if (j > end && j < len && s.charAt(j) != COMMA) {
+				// A token68 directly after the scheme, or its first auth-param
+				int k = skip(s, j, len, TOKEN68);
+				while (k < len && s.charAt(k) == EQUALS) {
+					k++;
+				}
+				int m = skipWhitespace(s, k, len);
+				if (k > j && (m == len || s.charAt(m) == COMMA)) {
+					i = k;
+					elementEnd = k;
+				}
+			}
+		}
+		return found >= 0 ? (long) found << 32 | elementEnd : -1;
+	}
+
+	/**
+	 * Skip the content of a quoted-string starting after the opening quote
+	 * at i, without validating it.
+	 *
+	 * @return Position of the closing quote.
+	 */
+	private static int skipQuotedString(CharSequence s, int i, int len, boolean stackless) throws AuthHeaderParsingException {
+		while (i < len) {
+			char c = s.charAt(i);
+			if (c == DQUOTE) {
+				return i;
+			}
+			i += c == BACKSLASH ? 2 : 1;
+		}
+		throw AuthHeaderParsingException.create(stackless, "Unterminated quoted string", null);
+	}
+
+	/**
+	 * Unescape the quoted-pairs in a range of a quoted-string.
+	 *
+	 * @param s
+	 * @param start
+	 * @param end
+	 * @return The unescaped content
+	 */
+	public static String unescape(CharSequence s, int start, int end) {
+		StringBuilder sb = new StringBuilder(end - start);
+		for (int i = start; i < end; i++) {
+			char c = s.charAt(i);
+			if (c == BACKSLASH && i + 1 < end) {
+				c = s.charAt(++i);
+			}
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Parse the content of the quoted-string starting after the opening quote
+	 * at i and set escaped accordingly. The scan stops at bound.
+	 *
+	 * @return Position of the closing quote, or a position at or beyond bound
+	 *         if the string is not closed before.
+	 */
+	private int parseQuotedString(CharSequence s, int i, int bound) throws AuthHeaderParsingException {
+		escaped = false;
+		final int len = s.length();
+		final AsciiSequence bytes = WORDWISE_SCANNING && s instanceof AsciiSequence ? (AsciiSequence) s : null;
+		while (i < bound) {
+			if (bytes != null) {
+				// Skip plain qdtext in one go
+				i = bytes.indexOfQuotedSpecial(i, bound);
+				if (i == bound) {
+					break;
+				}
+			}
+			char c = s.charAt(i);
+			if (c == DQUOTE) {
+				return i;
+			}
+			if (c == BACKSLASH) {
+				if (i + 1 >= len || !isQuotedPairChar(s.charAt(i + 1))) {
+					throw error("Invalid escape at position " + i + " in quoted string");
+				}
+				escaped = true;
+				i += 2;
+				continue;
+			}
+			if (!isQdtext(c)) {
+				throw error("Invalid character at position " + i + " in quoted string");
+			}
+			i++;
+		}
+		if (i < len) {
+			// Stopped at the bound, the caller rejects the value
+			return i;
+		}
+		throw error("Unterminated quoted string");
+	}
+
+	/**
+	 * End of the scan for a value starting at start: one beyond the maximum
+	 * length, so that exceeding values can be detected.
+	 */
+	private static int bound(int start, int max, int len) {
+		return max < len - start ? start + max + 1 : len;
+	}
+
+	private AuthHeaderParsingException error(String message) {
+		return AuthHeaderParsingException.create(stackless, message, null);
+	}
+
+	private AuthHeaderParsingException reject(AuthHeaderLimits.Violation violation, String message) {
+		limits.reject(violation);
+		return error(message);
+	}
+
+	private static int skip(CharSequence s, int i, int len, int charClass) {
+		while (i < len) {
+			char c = s.charAt(i);
+			if (c >= 128 || (CHAR_CLASSES[c] & charClass) == 0) {
+				break;
+			}
+			i++;
+		}
+		return i;
+	}
+
+	private static int skipWhitespace(CharSequence s, int i, int len) {
+		while (i < len && isWhitespace(s.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == SP || c == HTAB;
+	}
+
+	/** HTAB, SP, and visible characters, including obs-text, except '"' and '\'. */
+	private static boolean isQdtext(char c) {
+		return c == HTAB || (c >= SP && c != 0x7F && c != DQUOTE && c != BACKSLASH);
+	}
+
+	private static boolean isQuotedPairChar(char c) {
+		return c == HTAB || (c >= SP && c != 0x7F);
+	}
+
+	/**
+	 * Creates the strings for an {@link AuthDirectiveBuilder}.
+	 */
+	private static final class StringAdapter implements AuthDirectiveRangeBuilder {
+		private final AuthDirectiveBuilder builder;
+
+		private StringAdapter(AuthDirectiveBuilder builder) {
+			this.builder = builder;
+		}
+
+		@Override
+		public void scheme(CharSequence header, int start, int end) throws AuthHeaderParsingException {
+			builder.scheme(header.subSequence(start, end).toString());
+		}
+
+		@Override
+		public void token(CharSequence header, int start, int end) throws AuthHeaderParsingException {
+			builder.token(header.subSequence(start, end).toString());
+		}
+
+		@Override
+		public void param(CharSequence header, int keyStart, int keyEnd,
+				int valueStart, int valueEnd, boolean escaped) throws AuthHeaderParsingException {
+			String value = escaped ? unescape(header, valueStart, valueEnd)
+					: header.subSequence(valueStart, valueEnd).toString();
+			builder.param(header.subSequence(keyStart, keyEnd).toString(), value);
+		}
+	}
+
+}
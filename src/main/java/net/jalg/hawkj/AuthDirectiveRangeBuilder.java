@@ -0,0 +1,52 @@
+package net.jalg.hawkj;
+
+/** A range based builder that is called by an auth-header parse.
+ *
+ * In contrast to {@link AuthDirectiveBuilder}, this builder receives the
+ * positions of the parsed elements in the header value instead of strings, so
+ * that implementations can decide which elements to materialize.
+ *
+ * All ranges are given as start (inclusive) and end (exclusive) index into
+ * the parsed header value.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public interface AuthDirectiveRangeBuilder {
+
+	/** Callback to be called when the authentication scheme name is parsed.
+	 * @param header The parsed header value
+	 * @param start
+	 * @param end
+	 * @throws AuthHeaderParsingException
+	 */
+	public void scheme(CharSequence header, int start, int end) throws AuthHeaderParsingException;
+
+	/** Callback to be called when a token68 header field is parsed.
+	 *
+	 * @param header The parsed header value
+	 * @param start
+	 * @param end
+	 * @throws AuthHeaderParsingException
+	 */
+	public void token(CharSequence header, int start, int end) throws AuthHeaderParsingException;
+
+	/** Callback to be called when a name-value field has been parsed.
+	 *
+	 * The value range excludes the double quotation marks of a quoted value.
+	 * If escaped is true, the range contains quoted-pairs and must be
+	 * unescaped with {@link AuthDirectiveParser#unescape(CharSequence, int, int)}
+	 * before use.
+	 *
+	 * @param header The parsed header value
+	 * @param keyStart
+	 * @param keyEnd
+	 * @param valueStart
+	 * @param valueEnd
+	 * @param escaped Whether the value contains quoted-pairs.
+	 * @throws AuthHeaderParsingException
+	 */
+	public void param(CharSequence header, int keyStart, int keyEnd,
+			int valueStart, int valueEnd, boolean escaped) throws AuthHeaderParsingException;
+
+}
@@ -0,0 +1,207 @@
+package net.jalg.hawkj;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Limits for the work an {@link AuthDirectiveParser} spends on a header value.
+ *
+ * Without limits, the cost of parsing a header, and of hashing its values into
+ * the base string later, grows with the size of the header a client chooses to
+ * send. The parser checks these limits during its single scan and rejects a
+ * header as soon as a limit is exceeded:
+ * <ul>
+ * <li>The length of the header value is checked before parsing starts.</li>
+ * <li>The number of parameters is checked before each parameter is
+ * parsed.</li>
+ * <li>The scan of a parameter value stops as soon as the value exceeds the
+ * maximum length for its name. Hawk parameters can have individual maximum
+ * lengths, all other parameters share a common one.</li>
+ * </ul>
+ * Each rejection is counted per {@link Violation}, so that servers can
+ * monitor oversized or hostile traffic.
+ * <p>
+ * Limits are immutable apart from their counters and can be shared by any
+ * number of parsers. The default limits, used by parsers that are not given
+ * other limits, are generous enough for all regular Hawk headers and can be
+ * replaced with {@link #setDefault(AuthHeaderLimits)}.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public final class AuthHeaderLimits {
+
+	public static final int DEFAULT_MAX_HEADER_LENGTH = 8192;
+	public static final int DEFAULT_MAX_PARAMETERS = 32;
+	public static final int DEFAULT_MAX_VALUE_LENGTH = 4096;
+	public static final int DEFAULT_MAX_ID_LENGTH = 256;
+	public static final int DEFAULT_MAX_NONCE_LENGTH = 256;
+	/** The 19 digits of a long, timestamps have no sign. */
+	public static final int DEFAULT_MAX_TS_LENGTH = 19;
+
+	/**
+	 * The reasons for rejecting a header.
+	 */
+	public enum Violation {
+		HEADER_LENGTH, PARAMETER_COUNT, VALUE_LENGTH
+	}
+
+	private static volatile AuthHeaderLimits defaultLimits = builder().build();
+
+	private final int maxHeaderLength;
+	private final int maxParameters;
+	private final int maxValueLength;
+	private final int[] maxDirectiveLengths;
+	private final AtomicLongArray rejections = new AtomicLongArray(
+			Violation.values().length);
+
+	private AuthHeaderLimits(AuthHeaderLimitsBuilder builder) {
+		this.maxHeaderLength = builder.maxHeaderLength;
+		this.maxParameters = builder.maxParameters;
+		this.maxValueLength = builder.maxValueLength;
+		this.maxDirectiveLengths = builder.maxDirectiveLengths.clone();
+		for (int i = 0; i < maxDirectiveLengths.length; i++) {
+			if (maxDirectiveLengths[i] < 0) {
+				maxDirectiveLengths[i] = maxValueLength;
+			}
+		}
+	}
+
+	/**
+	 * Get the limits used by parsers that are not given other limits.
+	 *
+	 * @return The default limits.
+	 */
+	public static AuthHeaderLimits getDefault() {
+		return defaultLimits;
+	}
+
+	/**
+	 * Replace the limits used by parsers that are not given other limits.
+	 * Parsers created before keep the limits they have been created with.
+	 *
+	 * @param limits
+	 *            The new default limits.
+	 */
+	public static void setDefault(AuthHeaderLimits limits) {
+		if (limits == null) {
+			throw new IllegalArgumentException("Null limits not allowed");
+		}
+		defaultLimits = limits;
+	}
+
+	public static AuthHeaderLimitsBuilder builder() {
+		return new AuthHeaderLimitsBuilder();
+	}
+
+	public int getMaxHeaderLength() {
+		return maxHeaderLength;
+	}
+
+	public int getMaxParameters() {
+		return maxParameters;
+	}
+
+	public int getMaxValueLength() {
+		return maxValueLength;
+	}
+
+	public int getMaxValueLength(HawkDirective directive) {
+		return maxDirectiveLengths[directive.ordinal()];
+	}
+
+	/**
+	 * Get the maximum length of the value of the parameter with the name in
+	 * the given range.
+	 */
+	int maxValueLength(CharSequence s, int keyStart, int keyEnd) {
+		HawkDirective directive = HawkDirective.match(s, keyStart, keyEnd);
+		return directive == null ? maxValueLength
+				: maxDirectiveLengths[directive.ordinal()];
+	}
+
+	/**
+	 * Get the number of headers rejected for a violation of a limit.
+	 *
+	 * @param violation
+	 * @return The number of rejections since creation or the last
+	 *         {@link #resetRejections()}.
+	 */
+	public long getRejections(Violation violation) {
+		return rejections.get(violation.ordinal());
+	}
+
+	public void resetRejections() {
+		for (int i = 0; i < rejections.length(); i++) {
+			rejections.set(i, 0);
+		}
+	}
+
+	void reject(Violation violation) {
+		rejections.incrementAndGet(violation.ordinal());
+	}
+
+	@Override
+	public String toString() {
+		return "AuthHeaderLimits [maxHeaderLength=" + maxHeaderLength
+				+ ", maxParameters=" + maxParameters + ", maxValueLength="
+				+ maxValueLength + "]";
+	}
+
+	public static class AuthHeaderLimitsBuilder {
+		private int maxHeaderLength = DEFAULT_MAX_HEADER_LENGTH;
+		private int maxParameters = DEFAULT_MAX_PARAMETERS;
+		private int maxValueLength = DEFAULT_MAX_VALUE_LENGTH;
+		/** Per directive maximum, -1 for maxValueLength. */
+		private final int[] maxDirectiveLengths = new int[HawkDirective
+				.values().length];
+
+		private AuthHeaderLimitsBuilder() {
+			Arrays.fill(maxDirectiveLengths, -1);
+			maxDirectiveLengths[HawkDirective.ID.ordinal()] = DEFAULT_MAX_ID_LENGTH;
+			maxDirectiveLengths[HawkDirective.NONCE.ordinal()] = DEFAULT_MAX_NONCE_LENGTH;
+			maxDirectiveLengths[HawkDirective.TS.ordinal()] = DEFAULT_MAX_TS_LENGTH;
+		}
+
+		public AuthHeaderLimitsBuilder maxHeaderLength(int max) {
+			this.maxHeaderLength = positive(max);
+			return this;
+		}
+
+		public AuthHeaderLimitsBuilder maxParameters(int max) {
+			this.maxParameters = positive(max);
+			return this;
+		}
+
+		/**
+		 * Set the maximum value length of all parameters that do not have an
+		 * individual maximum length.
+		 */
+		public AuthHeaderLimitsBuilder maxValueLength(int max) {
+			this.maxValueLength = positive(max);
+			return this;
+		}
+
+		/**
+		 * Set the maximum value length of a Hawk parameter.
+		 */
+		public AuthHeaderLimitsBuilder maxValueLength(HawkDirective directive,
+				int max) {
+			this.maxDirectiveLengths[directive.ordinal()] = positive(max);
+			return this;
+		}
+
+		public AuthHeaderLimits build() {
+			return new AuthHeaderLimits(this);
+		}
+
+		private static int positive(int max) {
+			if (max <= 0) {
+				throw new IllegalArgumentException("Limit must be positive: "
+						+ max);
+			}
+			return max;
+		}
+	}
+
+}
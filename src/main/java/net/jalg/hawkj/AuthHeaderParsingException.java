@@ -1,6 +1,9 @@
 package net.jalg.hawkj;
 
 /** Exception class for auth-header parsing exceptions.
+ * 
+ * The stack trace is only filled in if enabled with
+ * {@link HawkException#setStackTraceEnabled(boolean)}.
  * 
  * @author Jan Algermissen, http://jalg.net
  *
@@ -8,12 +11,23 @@ package net.jalg.hawkj;
 public class AuthHeaderParsingException extends Exception {
 	
 	public AuthHeaderParsingException(String message, Throwable cause) {
-		super(message, cause);
+		this(message, cause, HawkException.isStackTraceEnabled());
 	}
 
 	public AuthHeaderParsingException(String message) {
-		super(message);
+		this(message, null);
+	}
+
+	private AuthHeaderParsingException(String message, Throwable cause, boolean writableStackTrace) {
+		super(message, cause, true, writableStackTrace);
 	}
 
+	/**
+	 * Create an exception that is caught and turned into a {@link HawkResult}
+	 * by the caller. Such exceptions never have a stack trace.
+	 */
+	static AuthHeaderParsingException create(boolean stackless, String message, Throwable cause) {
+		return new AuthHeaderParsingException(message, cause, !stackless && HawkException.isStackTraceEnabled());
+	}
 	
 }
@@ -1,5 +1,8 @@
 package net.jalg.hawkj;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 /**
  * Builder implementation for Authorization headers.
  *
@@ -10,7 +13,6 @@ public class AuthorizationHeader {
 
 	private static final char BLANK = ' ';
 	private static final char COMMA = ',';
-	private static final String ESCDQUOTE = "\"";
 
 	private String id;
 	private String mac;
@@ -56,42 +58,134 @@ public class AuthorizationHeader {
         return dlg;
     }
 
-    public String toString() {
-		StringBuilder sb = new StringBuilder(HawkContext.SCHEME);
+	/**
+	 * Get the exact number of characters written by
+	 * {@link #writeTo(Appendable)}.
+	 *
+	 * @return The length of the header value
+	 */
+	public int length() {
+		int len = HawkContext.SCHEME.length();
+		if (id != null) {
+			len += HeaderWriter.paramLength("id", id.length());
+		}
+		if (mac != null) {
+			len += HeaderWriter.paramLength("mac", mac.length());
+		}
+		if (hash != null) {
+			len += HeaderWriter.paramLength("hash", hash.length());
+		}
+		if (ts != 0) {
+			len += HeaderWriter.paramLength("ts", HeaderWriter.longLength(ts));
+		}
+		if (nonce != null) {
+			len += HeaderWriter.paramLength("nonce", nonce.length());
+		}
+		if (ext != null) {
+			len += HeaderWriter.paramLength("ext", HeaderWriter.escapedLength(ext));
+		}
+        if (app != null) {
+            len += HeaderWriter.paramLength("app", app.length());
+        }
+        if (dlg != null) {
+            len += HeaderWriter.paramLength("dlg", dlg.length());
+        }
+		return len;
+	}
+
+	/**
+	 * Write the header value, e.g. into the header buffer of a response,
+	 * without creating temporary strings.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeTo(Appendable out) throws IOException {
+		out.append(HawkContext.SCHEME);
 		char delim = BLANK;
 		if (id != null) {
-			sb.append(delim).append("id=\"").append(id).append(ESCDQUOTE);
+			HeaderWriter.appendParamStart(out, delim, "id");
+			out.append(id);
+			HeaderWriter.appendParamEnd(out);
 			delim = COMMA;
 		}
 		if (mac != null) {
-			sb.append(delim).append("mac=\"").append(mac).append(ESCDQUOTE);
+			HeaderWriter.appendParamStart(out, delim, "mac");
+			out.append(mac);
+			HeaderWriter.appendParamEnd(out);
 			delim = COMMA;
 		}
 		if (hash != null) {
-			sb.append(delim).append("hash=\"").append(hash).append(ESCDQUOTE);
+			HeaderWriter.appendParamStart(out, delim, "hash");
+			out.append(hash);
+			HeaderWriter.appendParamEnd(out);
 			delim = COMMA;
 		}
 		if (ts != 0) {
-			sb.append(delim).append("ts=\"").append(ts).append(ESCDQUOTE);
+			HeaderWriter.appendParamStart(out, delim, "ts");
+			HeaderWriter.appendLong(out, ts);
+			HeaderWriter.appendParamEnd(out);
 			delim = COMMA;
 		}
 		if (nonce != null) {
-			sb.append(delim).append("nonce=\"").append(nonce).append(ESCDQUOTE);
+			HeaderWriter.appendParamStart(out, delim, "nonce");
+			out.append(nonce);
+			HeaderWriter.appendParamEnd(out);
 			delim = COMMA;
 		}
 		if (ext != null) {
 			// Regarding escaping see https://github.com/algermissen/hawkj/issues/1
-			String escaped = ext.replace(ESCDQUOTE, "\\\"");
-			sb.append(delim).append("ext=\"").append(escaped).append(ESCDQUOTE);
+			HeaderWriter.appendParamStart(out, delim, "ext");
+			HeaderWriter.appendEscaped(out, ext);
+			HeaderWriter.appendParamEnd(out);
 			delim = COMMA;
 		}
         if (app != null) {
-            sb.append(delim).append("app=\"").append(app).append(ESCDQUOTE);
+            HeaderWriter.appendParamStart(out, delim, "app");
+            out.append(app);
+            HeaderWriter.appendParamEnd(out);
             delim = COMMA;
         }
         if (dlg != null) {
-            sb.append(delim).append("dlg=\"").append(dlg).append(ESCDQUOTE);
+            HeaderWriter.appendParamStart(out, delim, "dlg");
+            out.append(dlg);
+            HeaderWriter.appendParamEnd(out);
         }
+	}
+
+	/**
+	 * Write the header value as ISO-8859-1 bytes at the position of a buffer.
+	 *
+	 * @param out
+	 * @throws java.nio.BufferOverflowException
+	 *             If the buffer has less than {@link #length()} bytes
+	 *             remaining. Nothing is written in that case.
+	 * @throws IllegalArgumentException
+	 *             If a value contains characters that cannot be written as
+	 *             ISO-8859-1. Nothing is written in that case.
+	 */
+	public void writeTo(ByteBuffer out) {
+		HeaderWriter.checkLatin1("id", id);
+		HeaderWriter.checkLatin1("mac", mac);
+		HeaderWriter.checkLatin1("hash", hash);
+		HeaderWriter.checkLatin1("nonce", nonce);
+		HeaderWriter.checkLatin1("ext", ext);
+		HeaderWriter.checkLatin1("app", app);
+		HeaderWriter.checkLatin1("dlg", dlg);
+		try {
+			writeTo(HeaderWriter.appendable(out, length()));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder(length());
+		try {
+			writeTo(sb);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
 		return sb.toString();
 	}
 
@@ -99,12 +193,43 @@ public class AuthorizationHeader {
 		return new AuthorizationBuilder();
 	}
 
+	/**
+	 * Parse an Authorization header value.
+	 *
+	 * The value is checked against the default {@link AuthHeaderLimits}:
+	 * values longer than 8192 characters, with more than 32 parameters or
+	 * with parameter values beyond the per-parameter maximum lengths are
+	 * rejected. Earlier versions accepted values of any size.
+	 *
+	 * Use {@link AuthorizationBuilder#limits(AuthHeaderLimits)} to parse with
+	 * other limits, or {@link AuthHeaderLimits#setDefault(AuthHeaderLimits)}
+	 * to change the limits for all parsers.
+	 *
+	 * @param value
+	 *            The header value.
+	 * @return The header.
+	 * @throws AuthHeaderParsingException
+	 *             If the value is malformed or exceeds a limit.
+	 */
 	public static AuthorizationHeader authorization(String value)
 			throws AuthHeaderParsingException {
-		AuthorizationBuilder b = new AuthorizationBuilder();
-		AuthDirectiveParser p = new AuthDirectiveParser(value, b);
-		p.parse();
-		return b.build();
+		return new AuthorizationBuilder().parse(value).build();
+	}
+
+	/**
+	 * Parse a header value without throwing an exception if it is malformed.
+	 *
+	 * @param value
+	 *            The header value.
+	 * @return The result, holding the header or the status
+	 *         {@link HawkStatus#INVALID_HEADER}.
+	 */
+	public static HawkResult<AuthorizationHeader> tryAuthorization(String value) {
+		HawkResult<AuthorizationBuilder> result = new AuthorizationBuilder().tryParse(value);
+		if (!result.isOk()) {
+			return HawkResult.failure(result.getStatus(), result.getMessage());
+		}
+		return HawkResult.ok(result.getValue().build());
 	}
 
 	public static class AuthorizationBuilder implements AuthDirectiveBuilder {
@@ -117,10 +242,99 @@ public class AuthorizationHeader {
         private String app;
         private String dlg;
 
+		private AuthDirectiveParser parser;
+		private boolean stackless;
+		private AuthHeaderLimits limits;
+
 		private AuthorizationBuilder() {
 
 		}
 
+		/**
+		 * Clear all values so that the builder can be reused.
+		 *
+		 * @return This builder
+		 */
+		public AuthorizationBuilder reset() {
+			id = null;
+			mac = null;
+			hash = null;
+			nonce = null;
+			ts = 0;
+			ext = null;
+			app = null;
+			dlg = null;
+			return this;
+		}
+
+		/**
+		 * Set the limits for parsing header values with this builder,
+		 * instead of the default limits.
+		 *
+		 * @param limits
+		 * @return This builder
+		 */
+		public AuthorizationBuilder limits(AuthHeaderLimits limits) {
+			if (limits == null) {
+				throw new IllegalArgumentException("Null limits not allowed");
+			}
+			this.limits = limits;
+			return this;
+		}
+
+		/**
+		 * Reset the builder and parse a header value into it. The parser is
+		 * kept for reuse, so a builder that is reused per thread or
+		 * connection only allocates the parsed values.
+		 *
+		 * @param value
+		 *            The header value.
+		 * @return This builder
+		 * @throws AuthHeaderParsingException
+		 */
+		public AuthorizationBuilder parse(CharSequence value)
+				throws AuthHeaderParsingException {
+			reset();
+			if (parser == null) {
+				parser = new AuthDirectiveParser(value, new Ranges());
+			} else {
+				parser.reset(value);
+			}
+			if (limits != null) {
+				parser.setLimits(limits);
+			}
+			parser.setStackless(stackless);
+			parser.parse();
+			return this;
+		}
+
+		/**
+		 * Like {@link #parse(CharSequence)}, but reports a malformed header
+		 * value by status instead of throwing an exception.
+		 *
+		 * @param value
+		 *            The header value.
+		 * @return The result, holding this builder or the status
+		 *         {@link HawkStatus#INVALID_HEADER}.
+		 */
+		public HawkResult<AuthorizationBuilder> tryParse(CharSequence value) {
+			if (value == null) {
+				return HawkResult.failure(HawkStatus.INVALID_HEADER,
+						"Unable to parse a null header value");
+			}
+			stackless = true;
+			try {
+				parse(value);
+				return HawkResult.ok(this);
+			} catch (AuthHeaderParsingException e) {
+				return HawkResult.failure(HawkStatus.INVALID_HEADER,
+						e.getMessage());
+			} finally {
+				stackless = false;
+				parser.setStackless(false);
+			}
+		}
+
 		public AuthorizationHeader build() {
 			AuthorizationHeader instance = new AuthorizationHeader();
 			instance.id = id;
@@ -176,8 +390,8 @@ public class AuthorizationHeader {
 		@Override
 		public void scheme(String scheme) throws AuthHeaderParsingException {
 			if (!HawkContext.SCHEME.equalsIgnoreCase(scheme)) {
-				throw new AuthHeaderParsingException("Wrong scheme name "
-						+ scheme);
+				throw parsingException("Wrong scheme name "
+						+ Util.excerpt(scheme, 0, scheme.length()), null);
 			}
 		}
 
@@ -185,44 +399,106 @@ public class AuthorizationHeader {
 		public void param(String key, String value)
 				throws AuthHeaderParsingException {
 			if (value == null) {
-				throw new AuthHeaderParsingException("value is null for key: "
-						+ key);
+				throw parsingException("value is null for key: "
+						+ key, null);
 			}
 			if (key == null) {
-				throw new AuthHeaderParsingException("Received null-key");
+				throw parsingException("Received null-key", null);
+			}
+			HawkDirective directive = HawkDirective.match(key);
+			if (directive == null) {
+				// Ignore unknown parameter
+				return;
+			}
+			value(directive, value, 0, value.length(), false);
+		}
+
+		/**
+		 * Set the value of a directive from a range of characters. Numeric
+		 * values are parsed from the range without creating a String.
+		 */
+		private void value(HawkDirective directive, CharSequence s, int start,
+				int end, boolean escaped) throws AuthHeaderParsingException {
+			if (directive == HawkDirective.TS) {
+				long value = Util.parseNonNegativeLong(s, start, end);
+				if (value < 0) {
+					throw parsingException(Util.excerpt(s, start, end)
+							+ " is not a valid timestamp", null);
+				}
+				ts(value);
+				return;
 			}
-			key = key.toLowerCase();
-			if (key.equals("id")) {
+			String value = escaped ? AuthDirectiveParser.unescape(s, start, end)
+					: s.subSequence(start, end).toString();
+			switch (directive) {
+			case ID:
 				id(value);
-			} else if (key.equals("mac")) {
+				break;
+			case MAC:
 				mac(value);
-			} else if (key.equals("hash")) {
+				break;
+			case HASH:
 				hash(value);
-			} else if (key.equals("ts")) {
-				try {
-					ts(Long.parseLong(value));
-				} catch (NumberFormatException e) {
-					throw new AuthHeaderParsingException(value
-							+ " is not a long value", e);
-				}
-			} else if (key.equals("nonce")) {
+				break;
+			case NONCE:
 				nonce(value);
-			} else if (key.equals("ext")) {
+				break;
+			case EXT:
 				ext(value);
-            } else if (key.equals("app")) {
+				break;
+            case APP:
                 app(value);
-            } else if (key.equals("dlg")) {
+                break;
+            case DLG:
                 dlg(value);
-			} else {
-				// Ignore unknown parameter
+                break;
+			default:
+				// Ignore parameters of other headers
 			}
-
 		}
 
 		@Override
 		public void token(String token) throws AuthHeaderParsingException {
-			throw new AuthHeaderParsingException(
-					"token68 field not supported by Hawk authentication scheme");
+			throw parsingException(
+					"token68 field not supported by Hawk authentication scheme", null);
+		}
+
+		private AuthHeaderParsingException parsingException(String message, Throwable cause) {
+			return AuthHeaderParsingException.create(stackless, message, cause);
+		}
+
+		/**
+		 * Receives the ranges from the parser, so that only the values of
+		 * known string directives are materialized.
+		 */
+		private final class Ranges implements AuthDirectiveRangeBuilder {
+
+			@Override
+			public void scheme(CharSequence header, int start, int end)
+					throws AuthHeaderParsingException {
+				if (!Util.regionMatchesIgnoreCase(header, start, end, "hawk")) {
+					throw parsingException("Wrong scheme name "
+							+ Util.excerpt(header, start, end), null);
+				}
+			}
+
+			@Override
+			public void token(CharSequence header, int start, int end)
+					throws AuthHeaderParsingException {
+				throw parsingException(
+						"token68 field not supported by Hawk authentication scheme", null);
+			}
+
+			@Override
+			public void param(CharSequence header, int keyStart, int keyEnd,
+					int valueStart, int valueEnd, boolean escaped)
+					throws AuthHeaderParsingException {
+				HawkDirective directive = HawkDirective.match(header,
+						keyStart, keyEnd);
+				if (directive != null) {
+					value(directive, header, valueStart, valueEnd, escaped);
+				}
+			}
 		}
 
 	}
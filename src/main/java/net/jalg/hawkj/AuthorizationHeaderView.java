@@ -0,0 +1,530 @@
+package net.jalg.hawkj;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+
+import javax.crypto.Mac;
+
+/**
+ * Read-only, flyweight view of a parsed Authorization header.
+ *
+ * In contrast to {@link AuthorizationHeader}, parsing does not create a string
+ * for each parameter. The view only records where the parameter values are
+ * located in the original header value and creates strings on demand, so that
+ * a request that is rejected early (e.g. for an unknown id or a stale
+ * timestamp) never pays for the other values.
+ * <p>
+ * The getX() methods create a new String on each call. The getXSequence()
+ * methods return a CharSequence over the original header value without
+ * copying any characters; values that contain escaped characters are
+ * unescaped into a String instead.
+ * <p>
+ * The view refers to the parsed header value, which must not be modified
+ * while the view is in use.
+ * <p>
+ * Views can be reused: create one with {@link #AuthorizationHeaderView()} per
+ * thread or connection and call one of the parse() methods for each header.
+ * Parsing into a reused view and checking its mac with
+ * {@link #isValidMac(String, String, String, int, String, HawkKey, Algorithm)}
+ * does not create any objects for the header, unless values contain escaped
+ * characters. Views are not thread safe.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public final class AuthorizationHeaderView {
+
+	private static final int ID = 0;
+	private static final int MAC = 1;
+	private static final int HASH = 2;
+	private static final int NONCE = 3;
+	private static final int EXT = 4;
+	private static final int APP = 5;
+	private static final int DLG = 6;
+	private static final int NUMBER_OF_FIELDS = 7;
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private CharSequence headerValue;
+	private final int[] starts = new int[NUMBER_OF_FIELDS];
+	private final int[] ends = new int[NUMBER_OF_FIELDS];
+	private int escaped;
+	private long ts;
+
+	private final AuthDirectiveParser parser = new AuthDirectiveParser("",
+			new Collector());
+	private final AsciiSequence bytes = new AsciiSequence();
+	private final CharRange[] scratch = new CharRange[NUMBER_OF_FIELDS];
+	private boolean stackless;
+
+	/**
+	 * Create an empty view for reuse with the parse() methods.
+	 */
+	public AuthorizationHeaderView() {
+		for (int i = 0; i < NUMBER_OF_FIELDS; i++) {
+			scratch[i] = new CharRange();
+		}
+		reset();
+	}
+
+	/**
+	 * Clear all values and release the reference to the last header value.
+	 *
+	 * @return This view
+	 */
+	public AuthorizationHeaderView reset() {
+		clear();
+		headerValue = null;
+		for (int i = 0; i < NUMBER_OF_FIELDS; i++) {
+			scratch[i].set(null, 0, 0);
+		}
+		bytes.reset(EMPTY, 0, 0);
+		return this;
+	}
+
+	private void clear() {
+		for (int i = 0; i < NUMBER_OF_FIELDS; i++) {
+			starts[i] = -1;
+			ends[i] = -1;
+		}
+		escaped = 0;
+		ts = 0;
+	}
+
+	/**
+	 * Parse an Authorization header value into this view, replacing the
+	 * previous values.
+	 *
+	 * @param value
+	 *            The header value.
+	 * @return This view
+	 * @throws AuthHeaderParsingException
+	 */
+	public AuthorizationHeaderView parse(CharSequence value)
+			throws AuthHeaderParsingException {
+		if (value == null) {
+			throw new IllegalArgumentException("Unable to parse a null header value");
+		}
+		return parseValue(value);
+	}
+
+	/**
+	 * Parse an Authorization header value from its raw bytes into this view,
+	 * replacing the previous values.
+	 *
+	 * @see #authorization(byte[], int, int)
+	 *
+	 * @param bytes
+	 * @param offset
+	 *            Start of the header value in bytes.
+	 * @param length
+	 *            Length of the header value.
+	 * @return This view
+	 * @throws AuthHeaderParsingException
+	 */
+	public AuthorizationHeaderView parse(byte[] bytes, int offset, int length)
+			throws AuthHeaderParsingException {
+		return parseValue(this.bytes.reset(bytes, offset, length));
+	}
+
+	/**
+	 * Parse an Authorization header value from the raw bytes between position
+	 * and limit of a buffer into this view, replacing the previous values.
+	 *
+	 * @see #authorization(ByteBuffer)
+	 *
+	 * @param buffer
+	 * @return This view
+	 * @throws AuthHeaderParsingException
+	 */
+	public AuthorizationHeaderView parse(ByteBuffer buffer)
+			throws AuthHeaderParsingException {
+		return parseValue(this.bytes.reset(buffer));
+	}
+
+	/**
+	 * Set the limits for parsing header values into this view, instead of
+	 * the default limits.
+	 *
+	 * @param limits
+	 * @return This view
+	 */
+	public AuthorizationHeaderView setLimits(AuthHeaderLimits limits) {
+		parser.setLimits(limits);
+		return this;
+	}
+
+	/**
+	 * Create parsing exceptions without stack trace, for callers that catch
+	 * them and report a {@link HawkStatus} instead.
+	 */
+	void setStackless(boolean stackless) {
+		this.stackless = stackless;
+		parser.setStackless(stackless);
+	}
+
+	private AuthorizationHeaderView parseValue(CharSequence value)
+			throws AuthHeaderParsingException {
+		clear();
+		headerValue = value;
+		parser.reset(value);
+		parser.parse();
+		return this;
+	}
+
+	/**
+	 * Parse an Authorization header value into a view.
+	 *
+	 * @param value
+	 *            The header value.
+	 * @return The view
+	 * @throws AuthHeaderParsingException
+	 */
+	public static AuthorizationHeaderView authorization(CharSequence value)
+			throws AuthHeaderParsingException {
+		return new AuthorizationHeaderView().parse(value);
+	}
+
+	/**
+	 * Parse an Authorization header value from its raw bytes, without
+	 * decoding them.
+	 *
+	 * Header bytes are interpreted as ISO-8859-1 by the getX() methods and are
+	 * fed into {@link #isValidMac(String, String, String, int, String, HawkKey, Algorithm)}
+	 * as they are.
+	 *
+	 * @param bytes
+	 * @param offset
+	 *            Start of the header value in bytes.
+	 * @param length
+	 *            Length of the header value.
+	 * @return The view
+	 * @throws AuthHeaderParsingException
+	 */
+	public static AuthorizationHeaderView authorization(byte[] bytes,
+			int offset, int length) throws AuthHeaderParsingException {
+		return new AuthorizationHeaderView().parse(bytes, offset, length);
+	}
+
+	/**
+	 * Parse an Authorization header value from the raw bytes between position
+	 * and limit of a heap or direct buffer. The position of the buffer is not
+	 * changed.
+	 *
+	 * @see #authorization(byte[], int, int)
+	 *
+	 * @param buffer
+	 * @return The view
+	 * @throws AuthHeaderParsingException
+	 */
+	public static AuthorizationHeaderView authorization(ByteBuffer buffer)
+			throws AuthHeaderParsingException {
+		return new AuthorizationHeaderView().parse(buffer);
+	}
+
+	public CharSequence getHeaderValue() {
+		return headerValue;
+	}
+
+	public long getTs() {
+		return ts;
+	}
+
+	public boolean hasId() {
+		return has(ID);
+	}
+
+	public String getId() {
+		return string(ID);
+	}
+
+	public CharSequence getIdSequence() {
+		return sequence(ID);
+	}
+
+	public boolean hasMac() {
+		return has(MAC);
+	}
+
+	public String getMac() {
+		return string(MAC);
+	}
+
+	public CharSequence getMacSequence() {
+		return sequence(MAC);
+	}
+
+	public boolean hasHash() {
+		return has(HASH);
+	}
+
+	public String getHash() {
+		return string(HASH);
+	}
+
+	public CharSequence getHashSequence() {
+		return sequence(HASH);
+	}
+
+	public boolean hasNonce() {
+		return has(NONCE);
+	}
+
+	public String getNonce() {
+		return string(NONCE);
+	}
+
+	public CharSequence getNonceSequence() {
+		return sequence(NONCE);
+	}
+
+	public boolean hasExt() {
+		return has(EXT);
+	}
+
+	public String getExt() {
+		return string(EXT);
+	}
+
+	public CharSequence getExtSequence() {
+		return sequence(EXT);
+	}
+
+	public boolean hasApp() {
+		return has(APP);
+	}
+
+	public String getApp() {
+		return string(APP);
+	}
+
+	public CharSequence getAppSequence() {
+		return sequence(APP);
+	}
+
+	public boolean hasDlg() {
+		return has(DLG);
+	}
+
+	public String getDlg() {
+		return string(DLG);
+	}
+
+	public CharSequence getDlgSequence() {
+		return sequence(DLG);
+	}
+
+	/**
+	 * Check the mac of this header against the given request data and
+	 * credentials.
+	 *
+	 * The nonce, hash, ext, app and dlg values are written into the MAC input
+	 * straight from the parsed header value, without creating strings for
+	 * them. When the header was parsed from bytes, the bytes are copied as
+	 * they were received.
+	 *
+	 * @param method
+	 * @param path
+	 * @param host
+	 * @param port
+	 * @param id
+	 *            The credentials id, used to find a cached Mac.
+	 * @param key
+	 *            The credentials key
+	 * @param algorithm
+	 *            The credentials algorithm
+	 * @return true if the header has a ts, nonce and mac, and the mac
+	 *         matches, false otherwise.
+	 * @throws HawkException
+	 */
+	public boolean isValidMac(String method, String path, String host,
+			int port, String id, HawkKey key, Algorithm algorithm)
+			throws HawkException {
+		if (ts <= 0 || !hasNonce() || !hasMac()) {
+			return false;
+		}
+		BaseStringWriter w = BaseStringWriter.acquire();
+		HawkContext.writeBaseStringFields(w, ts, scratch(NONCE), method,
+				path, host, port, scratch(HASH), scratch(EXT), scratch(APP),
+				scratch(DLG));
+		Mac mac = MacCache.getDefault().getMac(id, key, algorithm,
+				HawkContext.HAWK_HEADER_MAC_PREFIX);
+		int len = w.doFinal(mac);
+		return Util.fixedTimeEqualBase64(w.macBuffer(), len, scratch(MAC));
+	}
+
+	/**
+	 * Check whether a given payload matches the hash of this header.
+	 *
+	 * The remaining bytes of the buffer are hashed without copying them. The
+	 * position of the buffer is not changed.
+	 *
+	 * @param body
+	 *            The received payload, heap or direct buffer
+	 * @param contentType
+	 *            The content type of the payload
+	 * @param algorithm
+	 *            The credentials algorithm
+	 * @return true if this header has a hash and it matches the hash of the
+	 *         payload, false otherwise.
+	 * @throws HawkException
+	 */
+	public boolean isValidHash(ByteBuffer body, String contentType,
+			Algorithm algorithm) throws HawkException {
+		if (!hasHash()) {
+			return false;
+		}
+		MessageDigest md = HawkContext.HawkContextBuilder.payloadDigest(
+				algorithm, body, contentType);
+		byte[] buf = BaseStringWriter.acquire().macBuffer();
+		int len;
+		try {
+			len = md.digest(buf, 0, buf.length);
+		} catch (DigestException e) {
+			throw new HawkException(e);
+		}
+		return Util.fixedTimeEqualBase64(buf, len, scratch(HASH));
+	}
+
+	/**
+	 * Materialize all values into an AuthorizationHeader.
+	 *
+	 * @return The header
+	 */
+	public AuthorizationHeader toAuthorizationHeader() {
+		return AuthorizationHeader.authorization().id(getId()).mac(getMac())
+				.hash(getHash()).ts(ts).nonce(getNonce()).ext(getExt())
+				.app(getApp()).dlg(getDlg()).build();
+	}
+
+	@Override
+	public String toString() {
+		return toAuthorizationHeader().toString();
+	}
+
+	private boolean has(int field) {
+		return starts[field] >= 0;
+	}
+
+	private boolean isEscaped(int field) {
+		return (escaped & (1 << field)) != 0;
+	}
+
+	private String string(int field) {
+		if (!has(field)) {
+			return null;
+		}
+		if (isEscaped(field)) {
+			return AuthDirectiveParser.unescape(headerValue, starts[field],
+					ends[field]);
+		}
+		return headerValue.subSequence(starts[field], ends[field]).toString();
+	}
+
+	private CharSequence sequence(int field) {
+		if (!has(field)) {
+			return null;
+		}
+		if (isEscaped(field)) {
+			return string(field);
+		}
+		return new CharRange(headerValue, starts[field], ends[field]);
+	}
+
+	/**
+	 * Like sequence(), but reuses the view's range objects. For internal use
+	 * only, the result must not escape.
+	 */
+	private CharSequence scratch(int field) {
+		if (!has(field)) {
+			return null;
+		}
+		if (isEscaped(field)) {
+			return string(field);
+		}
+		return scratch[field].set(headerValue, starts[field], ends[field]);
+	}
+
+	/**
+	 * Records the parameter ranges into the enclosing view.
+	 */
+	private final class Collector implements AuthDirectiveRangeBuilder {
+
+		@Override
+		public void scheme(CharSequence header, int start, int end)
+				throws AuthHeaderParsingException {
+			if (!Util.regionMatchesIgnoreCase(header, start, end, "hawk")) {
+				throw parsingException("Wrong scheme name "
+						+ Util.excerpt(header, start, end), null);
+			}
+		}
+
+		@Override
+		public void token(CharSequence header, int start, int end)
+				throws AuthHeaderParsingException {
+			throw parsingException(
+					"token68 field not supported by Hawk authentication scheme",
+					null);
+		}
+
+		@Override
+		public void param(CharSequence header, int keyStart, int keyEnd,
+				int valueStart, int valueEnd, boolean isEscaped)
+				throws AuthHeaderParsingException {
+			HawkDirective directive = HawkDirective.match(header, keyStart,
+					keyEnd);
+			if (directive == null) {
+				// Ignore unknown parameter
+				return;
+			}
+			int field;
+			switch (directive) {
+			case ID:
+				field = ID;
+				break;
+			case MAC:
+				field = MAC;
+				break;
+			case HASH:
+				field = HASH;
+				break;
+			case TS:
+				ts = Util.parseNonNegativeLong(header, valueStart, valueEnd);
+				if (ts < 0) {
+					throw parsingException(Util.excerpt(header, valueStart,
+							valueEnd) + " is not a valid timestamp", null);
+				}
+				return;
+			case NONCE:
+				field = NONCE;
+				break;
+			case EXT:
+				field = EXT;
+				break;
+			case APP:
+				field = APP;
+				break;
+			case DLG:
+				field = DLG;
+				break;
+			default:
+				// Ignore parameters of other headers
+				return;
+			}
+			starts[field] = valueStart;
+			ends[field] = valueEnd;
+			if (isEscaped) {
+				escaped |= 1 << field;
+			} else {
+				escaped &= ~(1 << field);
+			}
+		}
+	}
+
+	private AuthHeaderParsingException parsingException(String message,
+			Throwable cause) {
+		return AuthHeaderParsingException.create(stackless, message, cause);
+	}
+
+}
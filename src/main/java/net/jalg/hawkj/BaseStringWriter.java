@@ -0,0 +1,221 @@
+package net.jalg.hawkj;
+
+import java.security.MessageDigest;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+
+import net.jalg.hawkj.util.Charsets;
+
+/**
+ * Writer for the normalized strings that are fed into MAC and digest
+ * computation.
+ *
+ * The writer encodes the fields directly into a growable byte buffer as UTF-8,
+ * producing exactly the bytes of String.getBytes(UTF_8) for the concatenated
+ * fields without creating any intermediate strings. The buffer is then passed
+ * to the engine in a single update call.
+ * <p>
+ * One writer per thread is kept for reuse, see {@link #acquire()}. Writers are
+ * not thread safe.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+final class BaseStringWriter {
+
+	private static final int INITIAL_CAPACITY = 256;
+	private static final int MAX_MAC_LENGTH = 64;
+
+	private static final byte LF = '\n';
+	private static final byte REPLACEMENT = '?';
+
+	private static final ThreadLocal<BaseStringWriter> WRITERS = new ThreadLocal<BaseStringWriter>() {
+		@Override
+		protected BaseStringWriter initialValue() {
+			return new BaseStringWriter();
+		}
+	};
+
+	private byte[] buf;
+	private int length;
+
+	private final byte[] macBuffer = new byte[MAX_MAC_LENGTH];
+
+	BaseStringWriter() {
+		this.buf = new byte[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Get the writer of the current thread, reset to be empty.
+	 *
+	 * @return The thread's writer.
+	 */
+	static BaseStringWriter acquire() {
+		return WRITERS.get().reset();
+	}
+
+	BaseStringWriter reset() {
+		this.length = 0;
+		return this;
+	}
+
+	int length() {
+		return length;
+	}
+
+	byte[] buffer() {
+		return buf;
+	}
+
+	BaseStringWriter lf() {
+		ensure(1);
+		buf[length++] = LF;
+		return this;
+	}
+
+	BaseStringWriter append(CharSequence s) {
+		return append(s, 0, s.length());
+	}
+
+	/**
+	 * Append the chars [start, end) of s. The bytes of an
+	 * {@link AsciiSequence} are copied as they are.
+	 */
+	BaseStringWriter append(CharSequence s, int start, int end) {
+		if (s instanceof CharRange) {
+			CharRange r = (CharRange) s;
+			return append(r.source(), r.start() + start, r.start() + end);
+		}
+		/*
+		 * Reserve for the ASCII case, grow further only if we actually meet
+		 * non-ASCII characters.
+		 */
+		ensure(end - start);
+		if (s instanceof AsciiSequence) {
+			((AsciiSequence) s).copyTo(start, end, buf, length);
+			length += end - start;
+			return this;
+		}
+		for (int i = start; i < end; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				if (length == buf.length) {
+					ensure(end - i);
+				}
+				buf[length++] = (byte) c;
+			} else {
+				i = appendNonAscii(s, i, end);
+			}
+		}
+		return this;
+	}
+
+	BaseStringWriter append(long v) {
+		if (v == Long.MIN_VALUE) {
+			return append(Long.toString(v));
+		}
+		ensure(20);
+		if (v < 0) {
+			buf[length++] = '-';
+			v = -v;
+		}
+		int digits = 1;
+		for (long t = v; t >= 10; t /= 10) {
+			digits++;
+		}
+		int pos = length + digits;
+		length = pos;
+		do {
+			buf[--pos] = (byte) ('0' + (v % 10));
+			v /= 10;
+		} while (v != 0);
+		return this;
+	}
+
+	void update(Mac mac) {
+		mac.update(buf, 0, length);
+	}
+
+	/**
+	 * Feed the content into a Mac and finish the computation into the
+	 * writer's MAC buffer.
+	 *
+	 * @return The length of the MAC in {@link #macBuffer()}.
+	 * @throws HawkException
+	 */
+	int doFinal(Mac mac) throws HawkException {
+		mac.update(buf, 0, length);
+		try {
+			mac.doFinal(macBuffer, 0);
+		} catch (ShortBufferException e) {
+			throw new HawkException("MAC does not fit into "
+					+ MAX_MAC_LENGTH + " bytes", e);
+		}
+		return mac.getMacLength();
+	}
+
+	/**
+	 * Scratch buffer for MAC and digest results, e.g. of the last
+	 * {@link #doFinal(Mac)}.
+	 */
+	byte[] macBuffer() {
+		return macBuffer;
+	}
+
+	void update(MessageDigest md) {
+		md.update(buf, 0, length);
+	}
+
+	/**
+	 * Decode the current content. This is meant for debugging only.
+	 */
+	@Override
+	public String toString() {
+		return new String(buf, 0, length, Charsets.UTF_8);
+	}
+
+	/**
+	 * Encode the non-ASCII character at index i and return the index of the
+	 * last char consumed. Unpaired surrogates are encoded as '?', like
+	 * String.getBytes() does.
+	 */
+	private int appendNonAscii(CharSequence s, int i, int n) {
+		ensure(4);
+		char c = s.charAt(i);
+		if (c < 0x800) {
+			buf[length++] = (byte) (0xC0 | (c >> 6));
+			buf[length++] = (byte) (0x80 | (c & 0x3F));
+			return i;
+		}
+		if (Character.isHighSurrogate(c)) {
+			if (i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, s.charAt(i + 1));
+				buf[length++] = (byte) (0xF0 | (cp >> 18));
+				buf[length++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+				buf[length++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+				buf[length++] = (byte) (0x80 | (cp & 0x3F));
+				return i + 1;
+			}
+			buf[length++] = REPLACEMENT;
+			return i;
+		}
+		if (Character.isLowSurrogate(c)) {
+			buf[length++] = REPLACEMENT;
+			return i;
+		}
+		buf[length++] = (byte) (0xE0 | (c >> 12));
+		buf[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+		buf[length++] = (byte) (0x80 | (c & 0x3F));
+		return i;
+	}
+
+	private void ensure(int n) {
+		if (length + n > buf.length) {
+			byte[] b = new byte[Math.max(buf.length * 2, length + n)];
+			System.arraycopy(buf, 0, b, 0, length);
+			buf = b;
+		}
+	}
+
+}
@@ -0,0 +1,461 @@
+package net.jalg.hawkj;
+
+/**
+ * A pure Java HMAC implementation for {@link Algorithm#SHA_1} and
+ * {@link Algorithm#SHA_256} that does not go through the JCA provider
+ * framework.
+ *
+ * Instances operate on caller supplied byte arrays and do not allocate after
+ * construction. Keying an instance precomputes the hash states after
+ * absorbing the ipad and opad blocks. This precomputed state can be copied
+ * from one instance to another with {@link #init(BuiltinHmac)}, which is much
+ * cheaper than running the key schedule again.
+ * <p>
+ * Instances are not thread safe. An instance that is only used as the source
+ * of {@link #init(BuiltinHmac)} after it has been keyed can be shared between
+ * threads.
+ *
+ * @see MacImplementation
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public abstract class BuiltinHmac {
+
+	private static final int BLOCK_LENGTH = 64;
+	private static final byte IPAD = 0x36;
+	private static final byte OPAD = 0x5c;
+
+	private final Algorithm algorithm;
+	private final int macLength;
+
+	private final int[] state;
+	private final int[] innerKeyState;
+	private final int[] outerKeyState;
+
+	private final byte[] block = new byte[BLOCK_LENGTH];
+	private int blockLength;
+	private long byteCount;
+
+	private final byte[] keyBlock = new byte[BLOCK_LENGTH];
+	private final byte[] innerDigest;
+
+	private boolean keyed;
+
+	BuiltinHmac(Algorithm algorithm, int stateLength) {
+		this.algorithm = algorithm;
+		this.macLength = stateLength * 4;
+		this.state = new int[stateLength];
+		this.innerKeyState = new int[stateLength];
+		this.outerKeyState = new int[stateLength];
+		this.innerDigest = new byte[macLength];
+	}
+
+	/**
+	 * Check whether there is a built-in implementation for an algorithm.
+	 *
+	 * @param algorithm
+	 * @return true if {@link #getInstance(Algorithm)} supports the algorithm.
+	 */
+	public static boolean supports(Algorithm algorithm) {
+		return algorithm == Algorithm.SHA_1 || algorithm == Algorithm.SHA_256;
+	}
+
+	/**
+	 * Create a new, unkeyed instance.
+	 *
+	 * @param algorithm
+	 *            SHA_1 or SHA_256
+	 * @return The new instance
+	 */
+	public static BuiltinHmac getInstance(Algorithm algorithm) {
+		switch (algorithm) {
+		case SHA_1:
+			return new Sha1();
+		case SHA_256:
+			return new Sha256();
+		default:
+			throw new IllegalArgumentException("No built-in HMAC for "
+					+ algorithm);
+		}
+	}
+
+	public Algorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	public int getMacLength() {
+		return macLength;
+	}
+
+	/**
+	 * Key this instance. This computes the ipad and opad states.
+	 *
+	 * @param key
+	 * @param off
+	 * @param len
+	 */
+	public final void init(byte[] key, int off, int len) {
+		if (len > BLOCK_LENGTH) {
+			/*
+			 * Long keys are replaced by their hash. We use the working state
+			 * for this and put the result into the key block.
+			 */
+			initialState(state);
+			blockLength = 0;
+			byteCount = 0;
+			engineUpdate(key, off, len);
+			finish(keyBlock, 0);
+			len = macLength;
+		} else {
+			System.arraycopy(key, off, keyBlock, 0, len);
+		}
+		for (int i = len; i < BLOCK_LENGTH; i++) {
+			keyBlock[i] = 0;
+		}
+
+		for (int i = 0; i < BLOCK_LENGTH; i++) {
+			keyBlock[i] ^= IPAD;
+		}
+		initialState(innerKeyState);
+		compress(keyBlock, 0, innerKeyState);
+
+		for (int i = 0; i < BLOCK_LENGTH; i++) {
+			keyBlock[i] ^= (IPAD ^ OPAD);
+		}
+		initialState(outerKeyState);
+		compress(keyBlock, 0, outerKeyState);
+
+		for (int i = 0; i < BLOCK_LENGTH; i++) {
+			keyBlock[i] = 0;
+		}
+		keyed = true;
+		reset();
+	}
+
+	/**
+	 * Key this instance with the precomputed state of another, keyed instance
+	 * of the same algorithm.
+	 *
+	 * @param keyed
+	 *            The instance to copy the ipad and opad state from.
+	 */
+	public final void init(BuiltinHmac keyed) {
+		if (keyed.algorithm != algorithm) {
+			throw new IllegalArgumentException("Cannot init " + algorithm
+					+ " HMAC from " + keyed.algorithm + " HMAC");
+		}
+		if (!keyed.keyed) {
+			throw new IllegalStateException("Source HMAC is not keyed");
+		}
+		System.arraycopy(keyed.innerKeyState, 0, innerKeyState, 0,
+				innerKeyState.length);
+		System.arraycopy(keyed.outerKeyState, 0, outerKeyState, 0,
+				outerKeyState.length);
+		this.keyed = true;
+		reset();
+	}
+
+	/**
+	 * Continue from the current state of another, keyed instance of the same
+	 * algorithm: its key state and the input it has absorbed so far. This is
+	 * used to start from a prototype that has already absorbed a constant
+	 * prefix. Like after {@link #init(BuiltinHmac)}, doFinal() resets this
+	 * instance to the keyed state <em>without</em> that input.
+	 *
+	 * @param source
+	 *            The instance to copy the state from.
+	 */
+	final void copyState(BuiltinHmac source) {
+		init(source);
+		System.arraycopy(source.state, 0, state, 0, state.length);
+		System.arraycopy(source.block, 0, block, 0, source.blockLength);
+		blockLength = source.blockLength;
+		byteCount = source.byteCount;
+	}
+
+	/**
+	 * Reset to the keyed state, discarding any input.
+	 */
+	public final void reset() {
+		System.arraycopy(innerKeyState, 0, state, 0, state.length);
+		blockLength = 0;
+		byteCount = BLOCK_LENGTH;
+	}
+
+	public final void update(byte[] b, int off, int len) {
+		checkKeyed();
+		engineUpdate(b, off, len);
+	}
+
+	public final void update(byte[] b) {
+		update(b, 0, b.length);
+	}
+
+	/**
+	 * Finish the computation and reset to the keyed state.
+	 *
+	 * @param out
+	 *            Array to write the MAC to.
+	 * @param off
+	 *            Offset in out
+	 * @return The number of bytes written, {@link #getMacLength()}.
+	 */
+	public final int doFinal(byte[] out, int off) {
+		checkKeyed();
+		finish(innerDigest, 0);
+
+		System.arraycopy(outerKeyState, 0, state, 0, state.length);
+		blockLength = 0;
+		byteCount = BLOCK_LENGTH;
+		engineUpdate(innerDigest, 0, macLength);
+		finish(out, off);
+
+		reset();
+		return macLength;
+	}
+
+	/**
+	 * Finish the computation and reset to the keyed state.
+	 *
+	 * @return A new array holding the MAC.
+	 */
+	public final byte[] doFinal() {
+		byte[] out = new byte[macLength];
+		doFinal(out, 0);
+		return out;
+	}
+
+	/**
+	 * Set the initial hash value of the algorithm.
+	 */
+	abstract void initialState(int[] s);
+
+	/**
+	 * Process one 64 byte block.
+	 */
+	abstract void compress(byte[] b, int off, int[] s);
+
+	private void checkKeyed() {
+		if (!keyed) {
+			throw new IllegalStateException("HMAC is not keyed");
+		}
+	}
+
+	private void engineUpdate(byte[] b, int off, int len) {
+		byteCount += len;
+		if (blockLength > 0) {
+			int n = Math.min(BLOCK_LENGTH - blockLength, len);
+			System.arraycopy(b, off, block, blockLength, n);
+			blockLength += n;
+			off += n;
+			len -= n;
+			if (blockLength < BLOCK_LENGTH) {
+				return;
+			}
+			compress(block, 0, state);
+			blockLength = 0;
+		}
+		while (len >= BLOCK_LENGTH) {
+			compress(b, off, state);
+			off += BLOCK_LENGTH;
+			len -= BLOCK_LENGTH;
+		}
+		if (len > 0) {
+			System.arraycopy(b, off, block, 0, len);
+			blockLength = len;
+		}
+	}
+
+	/**
+	 * Apply the Merkle-Damgard padding and write the state big-endian.
+	 */
+	private void finish(byte[] out, int off) {
+		long bits = byteCount << 3;
+		block[blockLength++] = (byte) 0x80;
+		if (blockLength > BLOCK_LENGTH - 8) {
+			while (blockLength < BLOCK_LENGTH) {
+				block[blockLength++] = 0;
+			}
+			compress(block, 0, state);
+			blockLength = 0;
+		}
+		while (blockLength < BLOCK_LENGTH - 8) {
+			block[blockLength++] = 0;
+		}
+		for (int i = 7; i >= 0; i--) {
+			block[blockLength++] = (byte) (bits >>> (i * 8));
+		}
+		compress(block, 0, state);
+		blockLength = 0;
+
+		for (int i = 0; i < state.length; i++) {
+			int v = state[i];
+			out[off++] = (byte) (v >>> 24);
+			out[off++] = (byte) (v >>> 16);
+			out[off++] = (byte) (v >>> 8);
+			out[off++] = (byte) v;
+		}
+	}
+
+	private static int readInt(byte[] b, int off) {
+		return (b[off] << 24) | ((b[off + 1] & 0xFF) << 16)
+				| ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+	}
+
+	/**
+	 * SHA-1 as specified in FIPS 180-4.
+	 */
+	private static final class Sha1 extends BuiltinHmac {
+
+		private final int[] w = new int[80];
+
+		private Sha1() {
+			super(Algorithm.SHA_1, 5);
+		}
+
+		@Override
+		void initialState(int[] s) {
+			s[0] = 0x67452301;
+			s[1] = 0xEFCDAB89;
+			s[2] = 0x98BADCFE;
+			s[3] = 0x10325476;
+			s[4] = 0xC3D2E1F0;
+		}
+
+		@Override
+		void compress(byte[] b, int off, int[] s) {
+			for (int t = 0; t < 16; t++) {
+				w[t] = readInt(b, off + t * 4);
+			}
+			for (int t = 16; t < 80; t++) {
+				w[t] = Integer.rotateLeft(w[t - 3] ^ w[t - 8] ^ w[t - 14]
+						^ w[t - 16], 1);
+			}
+			int a = s[0];
+			int bb = s[1];
+			int c = s[2];
+			int d = s[3];
+			int e = s[4];
+			for (int t = 0; t < 80; t++) {
+				int f;
+				int k;
+				if (t < 20) {
+					f = (bb & c) | (~bb & d);
+					k = 0x5A827999;
+				} else if (t < 40) {
+					f = bb ^ c ^ d;
+					k = 0x6ED9EBA1;
+				} else if (t < 60) {
+					f = (bb & c) | (bb & d) | (c & d);
+					k = 0x8F1BBCDC;
+				} else {
+					f = bb ^ c ^ d;
+					k = 0xCA62C1D6;
+				}
+				int tmp = Integer.rotateLeft(a, 5) + f + e + k + w[t];
+				e = d;
+				d = c;
+				c = Integer.rotateLeft(bb, 30);
+				bb = a;
+				a = tmp;
+			}
+			s[0] += a;
+			s[1] += bb;
+			s[2] += c;
+			s[3] += d;
+			s[4] += e;
+		}
+	}
+
+	/**
+	 * SHA-256 as specified in FIPS 180-4.
+	 */
+	private static final class Sha256 extends BuiltinHmac {
+
+		private static final int[] K = { 0x428a2f98, 0x71374491, 0xb5c0fbcf,
+				0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+				0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74,
+				0x80deb1fe, 0x9bdc06a7, 0xc19bf174, 0xe49b69c1, 0xefbe4786,
+				0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc,
+				0x76f988da, 0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7,
+				0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967, 0x27b70a85,
+				0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb,
+				0x81c2c92e, 0x92722c85, 0xa2bfe8a1, 0xa81a664b, 0xc24b8b70,
+				0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+				0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3,
+				0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3, 0x748f82ee, 0x78a5636f,
+				0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7,
+				0xc67178f2 };
+
+		private final int[] w = new int[64];
+
+		private Sha256() {
+			super(Algorithm.SHA_256, 8);
+		}
+
+		@Override
+		void initialState(int[] s) {
+			s[0] = 0x6a09e667;
+			s[1] = 0xbb67ae85;
+			s[2] = 0x3c6ef372;
+			s[3] = 0xa54ff53a;
+			s[4] = 0x510e527f;
+			s[5] = 0x9b05688c;
+			s[6] = 0x1f83d9ab;
+			s[7] = 0x5be0cd19;
+		}
+
+		@Override
+		void compress(byte[] b, int off, int[] s) {
+			for (int t = 0; t < 16; t++) {
+				w[t] = readInt(b, off + t * 4);
+			}
+			for (int t = 16; t < 64; t++) {
+				int x = w[t - 15];
+				int y = w[t - 2];
+				int s0 = Integer.rotateRight(x, 7) ^ Integer.rotateRight(x, 18)
+						^ (x >>> 3);
+				int s1 = Integer.rotateRight(y, 17)
+						^ Integer.rotateRight(y, 19) ^ (y >>> 10);
+				w[t] = w[t - 16] + s0 + w[t - 7] + s1;
+			}
+			int a = s[0];
+			int bb = s[1];
+			int c = s[2];
+			int d = s[3];
+			int e = s[4];
+			int f = s[5];
+			int g = s[6];
+			int h = s[7];
+			for (int t = 0; t < 64; t++) {
+				int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11)
+						^ Integer.rotateRight(e, 25);
+				int ch = (e & f) ^ (~e & g);
+				int t1 = h + s1 + ch + K[t] + w[t];
+				int s0 = Integer.rotateRight(a, 2)
+						^ Integer.rotateRight(a, 13)
+						^ Integer.rotateRight(a, 22);
+				int maj = (a & bb) ^ (a & c) ^ (bb & c);
+				int t2 = s0 + maj;
+				h = g;
+				g = f;
+				f = e;
+				e = d + t1;
+				d = c;
+				c = bb;
+				bb = a;
+				a = t1 + t2;
+			}
+			s[0] += a;
+			s[1] += bb;
+			s[2] += c;
+			s[3] += d;
+			s[4] += e;
+			s[5] += f;
+			s[6] += g;
+			s[7] += h;
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+package net.jalg.hawkj;
+
+/**
+ * A CharSequence over a range of another CharSequence, without copying.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+final class CharRange implements CharSequence {
+	private CharSequence source;
+	private int start;
+	private int end;
+
+	CharRange() {
+	}
+
+	CharRange(CharSequence source, int start, int end) {
+		set(source, start, end);
+	}
+
+	/**
+	 * Point this range to another range, for reuse.
+	 */
+	CharRange set(CharSequence source, int start, int end) {
+		this.source = source;
+		this.start = start;
+		this.end = end;
+		return this;
+	}
+
+	CharSequence source() {
+		return source;
+	}
+
+	int start() {
+		return start;
+	}
+
+	@Override
+	public int length() {
+		return end - start;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= end - start) {
+			throw new IndexOutOfBoundsException("Index: " + index);
+		}
+		return source.charAt(start + index);
+	}
+
+	@Override
+	public CharSequence subSequence(int from, int to) {
+		if (from < 0 || to > end - start || from > to) {
+			throw new IndexOutOfBoundsException("Range: " + from + ", " + to);
+		}
+		return new CharRange(source, start + from, start + to);
+	}
+
+	@Override
+	public String toString() {
+		return source.subSequence(start, end).toString();
+	}
+}
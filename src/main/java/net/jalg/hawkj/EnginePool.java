@@ -0,0 +1,107 @@
+package net.jalg.hawkj;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.crypto.Mac;
+
+/**
+ * A pool of {@link BuiltinHmac} engines per {@link Algorithm}.
+ *
+ * JCA {@link Mac} and {@link MessageDigest} engines are not pooled: every
+ * computation starts from a clone of a keyed prototype held by
+ * {@link MacCache} or the payload digest cache, because a JCA engine cannot
+ * take over the state of another one. Built-in HMACs can
+ * ({@link BuiltinHmac#init(BuiltinHmac)}), so an EnginePool hands out
+ * instances that have been created before and are keyed from the cached
+ * prototype for each use.
+ * <p>
+ * The contract for users of a pool is:
+ * <ul>
+ * <li>An acquired BuiltinHmac must be initialized by the caller before it is
+ * used. It may carry the key of a previous use.</li>
+ * <li>Engines are released to the pool they have been acquired from, by the
+ * thread that acquired them, in a finally block, and must not be used after
+ * they have been released.</li>
+ * <li>Engines that are not released are simply left to the garbage
+ * collector.</li>
+ * </ul>
+ * The default pool is a {@link ThreadLocalEnginePool}. Applications running
+ * on virtual threads should install a {@link SharedEnginePool} using
+ * {@link #setDefault(EnginePool)} instead, because thread locals would keep one
+ * set of engines per virtual thread.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public abstract class EnginePool {
+
+	private static volatile EnginePool defaultPool = new ThreadLocalEnginePool();
+
+	/**
+	 * Get the pool used by hawkj for all built-in HMAC computations.
+	 *
+	 * @return The default pool.
+	 */
+	public static EnginePool getDefault() {
+		return defaultPool;
+	}
+
+	/**
+	 * Replace the pool used by hawkj for all built-in HMAC computations.
+	 *
+	 * @param pool
+	 *            The new default pool.
+	 */
+	public static void setDefault(EnginePool pool) {
+		if (pool == null) {
+			throw new IllegalArgumentException("Null pool not allowed");
+		}
+		defaultPool = pool;
+	}
+
+	/**
+	 * Acquire a {@link BuiltinHmac} for the given algorithm. The caller must
+	 * key it before use.
+	 *
+	 * @param algorithm
+	 *            SHA_1 or SHA_256
+	 * @return A built-in HMAC engine.
+	 */
+	public abstract BuiltinHmac acquireBuiltinHmac(Algorithm algorithm);
+
+	/**
+	 * Return a built-in HMAC to the pool.
+	 *
+	 * @param algorithm
+	 *            The algorithm the HMAC has been acquired for.
+	 * @param hmac
+	 */
+	public abstract void releaseBuiltinHmac(Algorithm algorithm,
+			BuiltinHmac hmac);
+
+	/**
+	 * Create a new Mac engine for a prototype.
+	 */
+	static Mac newMac(Algorithm algorithm) throws HawkException {
+		try {
+			return Mac.getInstance(algorithm.getMacName());
+		} catch (NoSuchAlgorithmException e) {
+			throw new HawkException("Unknown algorithm "
+					+ algorithm.getMacName(), e);
+		}
+	}
+
+	/**
+	 * Create a new MessageDigest engine for a prototype.
+	 */
+	static MessageDigest newDigest(Algorithm algorithm) throws HawkException {
+		try {
+			return MessageDigest.getInstance(algorithm.getMessageDigestName());
+		} catch (NoSuchAlgorithmException e) {
+			throw new HawkException("Digest algorithm "
+					+ algorithm.getMessageDigestName() + " not found", e);
+		}
+	}
+
+}
@@ -0,0 +1,198 @@
+package net.jalg.hawkj;
+
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Asynchronous facade for HMAC and payload hash verification.
+ *
+ * Verifications are run on a caller supplied {@link Executor} and the result
+ * is delivered through a {@link CompletableFuture}, so that event loop based
+ * servers never perform the crypto on the event loop thread.
+ * <p>
+ * The number of verifications in flight is bounded. When the bound is reached,
+ * new verifications are not queued but fail immediately with a
+ * {@link RejectedExecutionException}, so callers never block. Failures of the
+ * verification itself (e.g. a {@link HawkException}) complete the future
+ * exceptionally.
+ * <p>
+ * When running on virtual threads (see
+ * {@link #newVirtualThreadPerTaskExecutor()}), consider installing a
+ * {@link SharedEnginePool} as the default {@link EnginePool}.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public class HawkAsyncVerifier {
+
+	public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+
+	private final Executor executor;
+	private final int maxInFlight;
+	private final Semaphore permits;
+
+	/**
+	 * Create a verifier with {@link #DEFAULT_MAX_IN_FLIGHT}.
+	 *
+	 * @param executor
+	 *            Executor to run verifications on.
+	 */
+	public HawkAsyncVerifier(Executor executor) {
+		this(executor, DEFAULT_MAX_IN_FLIGHT);
+	}
+
+	/**
+	 * @param executor
+	 *            Executor to run verifications on.
+	 * @param maxInFlight
+	 *            Maximum number of verifications submitted but not yet
+	 *            completed.
+	 */
+	public HawkAsyncVerifier(Executor executor, int maxInFlight) {
+		if (executor == null) {
+			throw new IllegalArgumentException("Null executor not allowed");
+		}
+		if (maxInFlight <= 0) {
+			throw new IllegalArgumentException("maxInFlight must be positive");
+		}
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+		this.permits = new Semaphore(maxInFlight);
+	}
+
+	/**
+	 * Create an executor that starts a new virtual thread for each task.
+	 *
+	 * @return The executor
+	 * @throws UnsupportedOperationException
+	 *             If the Java runtime does not support virtual threads.
+	 */
+	public static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod(
+					"newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (NoSuchMethodException e) {
+			throw new UnsupportedOperationException(
+					"Virtual threads are not supported by this Java runtime", e);
+		} catch (IllegalAccessException e) {
+			throw new UnsupportedOperationException(
+					"Virtual threads are not accessible", e);
+		} catch (InvocationTargetException e) {
+			throw new UnsupportedOperationException(
+					"Unable to create virtual thread executor", e.getCause());
+		}
+	}
+
+	/**
+	 * Asynchronously check a received HMAC.
+	 *
+	 * @see HawkContext#isValidMac(String)
+	 *
+	 * @param context
+	 * @param mac
+	 *            The received HMAC.
+	 * @return Future that completes with the result of the check.
+	 */
+	public CompletableFuture<Boolean> verifyAsync(final HawkContext context,
+			final String mac) {
+		return submit(context, mac, null, null);
+	}
+
+	/**
+	 * Asynchronously check a received HMAC and payload. The result is true
+	 * only if both the HMAC and the payload hash are valid.
+	 *
+	 * @see HawkContext#isValidMac(String)
+	 * @see HawkContext#isValidHash(byte[], String)
+	 *
+	 * @param context
+	 * @param mac
+	 *            The received HMAC.
+	 * @param body
+	 *            The received payload.
+	 * @param contentType
+	 *            The content type of the payload
+	 * @return Future that completes with the result of the check.
+	 */
+	public CompletableFuture<Boolean> verifyAsync(final HawkContext context,
+			final String mac, final byte[] body, final String contentType) {
+		if (body == null) {
+			throw new IllegalArgumentException("Null body not allowed");
+		}
+		return submit(context, mac, ByteBuffer.wrap(body), contentType);
+	}
+
+	/**
+	 * Asynchronously check a received HMAC and a payload held in a heap or
+	 * direct buffer. The buffer must not be modified until the future
+	 * completes.
+	 *
+	 * @see #verifyAsync(HawkContext, String, byte[], String)
+	 *
+	 * @param context
+	 * @param mac
+	 *            The received HMAC.
+	 * @param body
+	 *            The received payload, between position and limit.
+	 * @param contentType
+	 *            The content type of the payload
+	 * @return Future that completes with the result of the check.
+	 */
+	public CompletableFuture<Boolean> verifyAsync(final HawkContext context,
+			final String mac, final ByteBuffer body, final String contentType) {
+		if (body == null) {
+			throw new IllegalArgumentException("Null body not allowed");
+		}
+		return submit(context, mac, body.duplicate(), contentType);
+	}
+
+	/**
+	 * @return Number of verifications currently in flight.
+	 */
+	public int getInFlight() {
+		return maxInFlight - permits.availablePermits();
+	}
+
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	private CompletableFuture<Boolean> submit(final HawkContext context,
+			final String mac, final ByteBuffer body, final String contentType) {
+		final CompletableFuture<Boolean> future = new CompletableFuture<Boolean>();
+		if (!permits.tryAcquire()) {
+			future.completeExceptionally(new RejectedExecutionException(
+					"More than " + maxInFlight + " verifications in flight"));
+			return future;
+		}
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						boolean valid = mac != null && context.isValidMac(mac);
+						if (valid && body != null) {
+							valid = context.isValidHash(body, contentType);
+						}
+						permits.release();
+						future.complete(valid);
+					} catch (Throwable t) {
+						permits.release();
+						future.completeExceptionally(t);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			permits.release();
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+}
@@ -0,0 +1,358 @@
+package net.jalg.hawkj;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.crypto.Mac;
+
+/**
+ * Verifies the HMACs of many requests at once.
+ *
+ * Items are grouped by credentials (id, key, algorithm, and MAC
+ * implementation). The MAC engine is obtained and keyed once per group and
+ * then reused for all items of the group, so that for bursty traffic from a
+ * limited number of clients the per-request cost of MAC setup approaches zero.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * HawkBatchVerifier batch = new HawkBatchVerifier();
+ * for (...) {
+ *     batch.add(context, authHeader.getMac());
+ * }
+ * boolean[] valid = batch.verify();
+ * </pre>
+ *
+ * Items can carry a payload, in which case the payload hash is verified as
+ * well.
+ * <p>
+ * Large batches can be verified in parallel on a {@link ForkJoinPool}, see
+ * {@link #verifyParallel(ForkJoinPool, int)}.
+ * <p>
+ * Instances are not thread safe.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public class HawkBatchVerifier {
+
+	/**
+	 * Default number of items below which a parallel verification does not
+	 * split its work further.
+	 */
+	public static final int DEFAULT_SPLIT_THRESHOLD = 256;
+
+	private final List<HawkContext> contexts = new ArrayList<HawkContext>();
+	private final List<String> macs = new ArrayList<String>();
+	private final List<ByteBuffer> bodies = new ArrayList<ByteBuffer>();
+	private final List<String> contentTypes = new ArrayList<String>();
+
+	/**
+	 * Add an item to verify.
+	 *
+	 * @param context
+	 *            The context built from the request and the credentials.
+	 * @param mac
+	 *            The received HMAC. A null value is reported as invalid.
+	 * @return The index of the item in the result of {@link #verify()}.
+	 */
+	public int add(HawkContext context, String mac) {
+		if (context == null) {
+			throw new IllegalArgumentException("Null context not allowed");
+		}
+		contexts.add(context);
+		macs.add(mac);
+		bodies.add(null);
+		contentTypes.add(null);
+		return contexts.size() - 1;
+	}
+
+	/**
+	 * Add an item to verify, including its payload. The item is only valid if
+	 * the HMAC is valid and the context's payload hash matches the payload.
+	 *
+	 * @param context
+	 *            The context built from the request and the credentials,
+	 *            including the received hash.
+	 * @param mac
+	 *            The received HMAC. A null value is reported as invalid.
+	 * @param body
+	 *            The received payload
+	 * @param contentType
+	 *            The content type of the payload
+	 * @return The index of the item in the result of {@link #verify()}.
+	 */
+	public int add(HawkContext context, String mac, byte[] body,
+			String contentType) {
+		if (body == null || body.length == 0) {
+			throw new IllegalArgumentException("Body must not be null or empty");
+		}
+		return add(context, mac, ByteBuffer.wrap(body), contentType);
+	}
+
+	/**
+	 * Add an item to verify, including its payload held in a heap or direct
+	 * buffer. The remaining bytes of the buffer are hashed during
+	 * verification; the buffer must not be modified until then.
+	 *
+	 * @see #add(HawkContext, String, byte[], String)
+	 *
+	 * @param context
+	 *            The context built from the request and the credentials,
+	 *            including the received hash.
+	 * @param mac
+	 *            The received HMAC. A null value is reported as invalid.
+	 * @param body
+	 *            The received payload
+	 * @param contentType
+	 *            The content type of the payload
+	 * @return The index of the item in the result of {@link #verify()}.
+	 */
+	public int add(HawkContext context, String mac, ByteBuffer body,
+			String contentType) {
+		if (body == null || !body.hasRemaining()) {
+			throw new IllegalArgumentException("Body must not be null or empty");
+		}
+		if (contentType == null) {
+			throw new IllegalArgumentException("Content type must not be null");
+		}
+		int i = add(context, mac);
+		bodies.set(i, body.duplicate());
+		contentTypes.set(i, contentType);
+		return i;
+	}
+
+	/**
+	 * Add an item to verify.
+	 *
+	 * @param context
+	 *            The context built from the request and the credentials.
+	 * @param header
+	 *            The received Authorization header
+	 * @return The index of the item in the result of {@link #verify()}.
+	 */
+	public int add(HawkContext context, AuthorizationHeader header) {
+		return add(context, header.getMac());
+	}
+
+	public int size() {
+		return contexts.size();
+	}
+
+	/**
+	 * Remove all items.
+	 */
+	public void clear() {
+		contexts.clear();
+		macs.clear();
+		bodies.clear();
+		contentTypes.clear();
+	}
+
+	/**
+	 * Verify all items.
+	 *
+	 * @return Array with one result per item, in the order the items have
+	 *         been added.
+	 * @throws HawkException
+	 */
+	public boolean[] verify() throws HawkException {
+		boolean[] results = new boolean[contexts.size()];
+		verify(0, contexts.size(), results);
+		return results;
+	}
+
+	/**
+	 * Verify all items in parallel on the common ForkJoinPool, using the
+	 * default split threshold.
+	 *
+	 * @return Array with one result per item, in the order the items have
+	 *         been added.
+	 * @throws HawkException
+	 */
+	public boolean[] verifyParallel() throws HawkException {
+		return verifyParallel(ForkJoinPool.commonPool(),
+				DEFAULT_SPLIT_THRESHOLD);
+	}
+
+	/**
+	 * Verify all items in parallel on a ForkJoinPool.
+	 *
+	 * The items are split recursively into halves until a part has no more
+	 * than threshold items. Grouping by credentials happens within each part,
+	 * so the threshold should be large enough for groups to form.
+	 *
+	 * @param pool
+	 *            The pool to run on. Its parallelism determines the number of
+	 *            threads used.
+	 * @param threshold
+	 *            Maximum number of items verified sequentially by one task.
+	 * @return Array with one result per item, in the order the items have
+	 *         been added.
+	 * @throws HawkException
+	 */
+	public boolean[] verifyParallel(ForkJoinPool pool, int threshold)
+			throws HawkException {
+		if (threshold <= 0) {
+			throw new IllegalArgumentException("Threshold must be positive");
+		}
+		boolean[] results = new boolean[contexts.size()];
+		pool.invoke(new VerifyTask(0, contexts.size(), threshold, results));
+		return results;
+	}
+
+	/**
+	 * Verify all items in parallel on a new ForkJoinPool that is shut down
+	 * afterwards.
+	 *
+	 * @param parallelism
+	 *            Number of threads to use.
+	 * @param threshold
+	 *            Maximum number of items verified sequentially by one task.
+	 * @return Array with one result per item, in the order the items have
+	 *         been added.
+	 * @throws HawkException
+	 */
+	public boolean[] verifyParallel(int parallelism, int threshold)
+			throws HawkException {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			return verifyParallel(pool, threshold);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Verify the items in [from, to) and put the results into results.
+	 */
+	void verify(int from, int to, boolean[] results) throws HawkException {
+		for (Map.Entry<Credentials, List<Integer>> group : group(from, to)
+				.entrySet()) {
+			Credentials c = group.getKey();
+			if (c.macImplementation == MacImplementation.BUILTIN) {
+				verifyBuiltin(c, group.getValue(), results);
+			} else {
+				Mac mac = MacCache.getDefault().getMac(c.id, c.key,
+						c.algorithm);
+				for (int i : group.getValue()) {
+					String m = macs.get(i);
+					results[i] = m != null && contexts.get(i).isValidMac(mac, m)
+							&& isValidHash(i);
+				}
+			}
+		}
+	}
+
+	private boolean isValidHash(int i) throws HawkException {
+		ByteBuffer body = bodies.get(i);
+		return body == null
+				|| contexts.get(i).isValidHash(body, contentTypes.get(i));
+	}
+
+	private void verifyBuiltin(Credentials c, List<Integer> items,
+			boolean[] results) {
+		BuiltinHmac keyed = MacCache.getDefault().getBuiltinHmac(c.id, c.key,
+				c.algorithm);
+		EnginePool pool = EnginePool.getDefault();
+		BuiltinHmac hmac = pool.acquireBuiltinHmac(c.algorithm);
+		try {
+			hmac.init(keyed);
+			for (int i : items) {
+				String m = macs.get(i);
+				results[i] = m != null && contexts.get(i).isValidMac(hmac, m)
+						&& isValidHash(i);
+			}
+		} finally {
+			pool.releaseBuiltinHmac(c.algorithm, hmac);
+		}
+	}
+
+	private Map<Credentials, List<Integer>> group(int from, int to) {
+		Map<Credentials, List<Integer>> groups = new LinkedHashMap<Credentials, List<Integer>>();
+		for (int i = from; i < to; i++) {
+			Credentials c = new Credentials(contexts.get(i));
+			List<Integer> items = groups.get(c);
+			if (items == null) {
+				items = new ArrayList<Integer>();
+				groups.put(c, items);
+			}
+			items.add(i);
+		}
+		return groups;
+	}
+
+	/**
+	 * Verifies a range of items, splitting it if it is larger than the
+	 * threshold. Each task writes to its own range of the result array.
+	 */
+	private final class VerifyTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final int threshold;
+		private final boolean[] results;
+
+		private VerifyTask(int from, int to, int threshold, boolean[] results) {
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+			this.results = results;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= threshold) {
+				verify(from, to, results);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new VerifyTask(from, middle, threshold, results),
+					new VerifyTask(middle, to, threshold, results));
+		}
+	}
+
+	/**
+	 * Grouping key.
+	 */
+	private static final class Credentials {
+		private final String id;
+		private final HawkKey key;
+		private final Algorithm algorithm;
+		private final MacImplementation macImplementation;
+
+		private Credentials(HawkContext context) {
+			this.id = context.getId();
+			this.key = context.getHawkKey();
+			this.algorithm = context.getAlgorithm();
+			this.macImplementation = context.getMacImplementation();
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * (31 * id.hashCode() + key.hashCode())
+					+ algorithm.hashCode()) + macImplementation.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Credentials)) {
+				return false;
+			}
+			Credentials other = (Credentials) obj;
+			return algorithm == other.algorithm
+					&& macImplementation == other.macImplementation
+					&& id.equals(other.id) && key.equals(other.key);
+		}
+	}
+
+}
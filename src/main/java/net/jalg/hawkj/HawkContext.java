@@ -1,13 +1,14 @@
 package net.jalg.hawkj;
 
-import java.security.InvalidKeyException;
+import java.nio.ByteBuffer;
+import java.security.DigestException;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 
 import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 
 import net.jalg.hawkj.AuthorizationHeader.AuthorizationBuilder;
+import net.jalg.hawkj.ext.HawkCredentials;
 import net.jalg.hawkj.util.Base64;
 import net.jalg.hawkj.util.Charsets;
 
@@ -69,7 +70,6 @@ public class HawkContext {
 	public static final int NUMBER_OF_NONCE_BYTES = 6;
 
 	// private static final String BODY_HASH_ALGORITHM = "SHA-1";
-	private static final String SLF = "\n"; // String-LineFeed
 	private static final byte[] BLF = { '\n' }; // Byte-LineFeed
 
 	private static final String HAWK_VERSION = "1";
@@ -78,6 +78,14 @@ public class HawkContext {
 	private static final String HAWK_PAYLOAD_PREFIX = "hawk." + HAWK_VERSION
 			+ ".payload";
 
+	/** Constant start of every header MAC input, absorbed by cached Macs */
+	static final String HAWK_HEADER_MAC_PREFIX = HAWK_HEADER_PREFIX
+			+ "\n";
+
+	private static final int PAYLOAD_DIGEST_CACHE_SIZE = 100;
+	private static final PayloadDigestCache PAYLOAD_DIGESTS = new PayloadDigestCache(
+			HAWK_PAYLOAD_PREFIX, PAYLOAD_DIGEST_CACHE_SIZE);
+
 	private final String method;
 	private final String path;
 	private final String host;
@@ -87,7 +95,7 @@ public class HawkContext {
 	private final String nonce;
 
 	private final String id;
-	private final String key;
+	private final HawkKey key;
 	private final Algorithm algorithm;
 
 	private final String hash;
@@ -98,9 +106,12 @@ public class HawkContext {
 
 	private final long offset;
 
+	private final MacImplementation macImplementation;
+
 	private HawkContext(String method, String path, String host, int port,
-			long ts, String nonce, String id, String key, Algorithm algorithm,
-			String hash, String ext,String app, String dlg, long offset) {
+			long ts, String nonce, String id, HawkKey key, Algorithm algorithm,
+			String hash, String ext,String app, String dlg, long offset,
+			MacImplementation macImplementation) {
 		this.method = method;
 		this.path = path;
 		this.host = host;
@@ -116,6 +127,7 @@ public class HawkContext {
         this.dlg = dlg;
 
 		this.offset = offset;
+		this.macImplementation = macImplementation;
 
 	}
 
@@ -132,6 +144,10 @@ public class HawkContext {
 	}
 
 	public String getKey() {
+		return this.key.asString();
+	}
+
+	public HawkKey getHawkKey() {
 		return this.key;
 	}
 
@@ -191,6 +207,10 @@ public class HawkContext {
 		return this.offset;
 	}
 
+	public MacImplementation getMacImplementation() {
+		return this.macImplementation;
+	}
+
 	/**
 	 * Create an Authorization header from this HawkContext.
 	 *
@@ -262,33 +282,170 @@ public class HawkContext {
 	 * @throws HawkException
 	 */
 	public boolean isValidMac(String hmac) throws HawkException {
-		String this_hmac = this.generateHmac();
-		return Util.fixedTimeEqual(this_hmac, hmac);
+		BaseStringWriter w = BaseStringWriter.acquire();
+		int len = computeMac(w);
+		return Util.fixedTimeEqualBase64(w.macBuffer(), len, hmac);
+	}
+
+	/**
+	 * Test whether a given HMAC is valid for this context, e.g. a value
+	 * obtained from {@link AuthorizationHeaderView#getMacSequence()}.
+	 *
+	 * @param hmac
+	 *            The HMAC value to test.
+	 * @return true if the HMAC matches the HMAC computed for this context,
+	 *         false otherwise.
+	 * @throws HawkException
+	 */
+	public boolean isValidMac(CharSequence hmac) throws HawkException {
+		BaseStringWriter w = BaseStringWriter.acquire();
+		int len = computeMac(w);
+		return Util.fixedTimeEqualBase64(w.macBuffer(), len, hmac);
+	}
+
+	/**
+	 * Test whether a given HMAC, held as ASCII bytes in a buffer, is valid
+	 * for this context. This avoids creating a String for a mac value that was
+	 * read from the network. The position of the buffer is not changed.
+	 * <p>
+	 * This is not an overload of {@link #isValidMac(CharSequence)}, so that
+	 * existing calls passing null stay unambiguous.
+	 *
+	 * @param hmac
+	 *            The Base64 HMAC between position and limit.
+	 * @return true if the HMAC matches the HMAC computed for this context,
+	 *         false otherwise.
+	 * @throws HawkException
+	 */
+	public boolean isValidBufferMac(ByteBuffer hmac) throws HawkException {
+		BaseStringWriter w = BaseStringWriter.acquire();
+		int len = computeMac(w);
+		return Util.fixedTimeEqualBase64(w.macBuffer(), len, hmac);
+	}
+
+	/**
+	 * Check whether a given payload matches the payload hash of this
+	 * HawkContext.
+	 *
+	 * @param body
+	 *            The received payload
+	 * @param contentType
+	 *            The content type of the payload
+	 * @return true if this context has a hash and it matches the hash of the
+	 *         payload, false otherwise.
+	 * @throws HawkException
+	 */
+	public boolean isValidHash(byte[] body, String contentType)
+			throws HawkException {
+		if (body == null) {
+			throw new IllegalArgumentException("Body must not be null or empty");
+		}
+		return isValidHash(ByteBuffer.wrap(body), contentType);
+	}
+
+	/**
+	 * Check whether a given payload matches the payload hash of this
+	 * HawkContext.
+	 *
+	 * The remaining bytes of the buffer are hashed without copying them to a
+	 * new array. The position of the buffer is not changed.
+	 *
+	 * @param body
+	 *            The received payload, heap or direct buffer
+	 * @param contentType
+	 *            The content type of the payload
+	 * @return true if this context has a hash and it matches the hash of the
+	 *         payload, false otherwise.
+	 * @throws HawkException
+	 */
+	public boolean isValidHash(ByteBuffer body, String contentType)
+			throws HawkException {
+		if (!hasHash()) {
+			return false;
+		}
+		MessageDigest md = HawkContextBuilder.payloadDigest(getAlgorithm(),
+				body, contentType);
+		byte[] buf = BaseStringWriter.acquire().macBuffer();
+		int len;
+		try {
+			len = md.digest(buf, 0, buf.length);
+		} catch (DigestException e) {
+			throw new HawkException(e);
+		}
+		return Util.fixedTimeEqualBase64(buf, len, getHash());
 	}
 
 	/**
 	 * Generate base string for HMAC generation.
 	 *
+	 * This is a debugging view of the bytes fed into the HMAC, the HMAC itself
+	 * is computed without creating this string.
+	 *
 	 * @return
 	 */
 	protected String getBaseString() {
-		StringBuilder sb = new StringBuilder(HAWK_HEADER_PREFIX).append(SLF);
-		sb.append(getTs()).append(SLF);
-		sb.append(getNonce()).append(SLF);
-		sb.append(getMethod()).append(SLF);
-		sb.append(getPath()).append(SLF);
-		sb.append(getHost()).append(SLF);
-		sb.append(getPort()).append(SLF);
-		sb.append(hasHash() ? getHash() : "").append(SLF);
-		sb.append(hasExt() ? getExt() : "").append(SLF);
+		return writeBaseString(new BaseStringWriter()).toString();
+	}
+
+	/**
+	 * Write the base string for HMAC generation to a writer.
+	 *
+	 * @param w
+	 *            The writer to append to.
+	 * @return The writer
+	 */
+	private BaseStringWriter writeBaseString(BaseStringWriter w) {
+		w.append(HAWK_HEADER_PREFIX).lf();
+		return writeBaseStringFields(w);
+	}
+
+	/**
+	 * Write the base string without the constant first line to a writer.
+	 *
+	 * @param w
+	 *            The writer to append to.
+	 * @return The writer
+	 */
+	private BaseStringWriter writeBaseStringFields(BaseStringWriter w) {
+		return writeBaseStringFields(w, ts, nonce, method, path, host, port,
+				hash, ext, app, dlg);
+	}
+
+	/**
+	 * Write the base string without the constant first line from individual
+	 * fields. Optional fields are null if absent.
+	 *
+	 * @return The writer
+	 */
+	static BaseStringWriter writeBaseStringFields(BaseStringWriter w, long ts,
+			CharSequence nonce, String method, String path, String host,
+			int port, CharSequence hash, CharSequence ext, CharSequence app,
+			CharSequence dlg) {
+		w.append(ts).lf();
+		w.append(nonce).lf();
+		w.append(method).lf();
+		w.append(path).lf();
+		w.append(host).lf();
+		w.append(port).lf();
+		if (hash != null) {
+			w.append(hash);
+		}
+		w.lf();
+		if (ext != null) {
+			w.append(ext);
+		}
+		w.lf();
 		// FIXME: escaping of stuff in ext to a single line.
 		// See https://github.com/algermissen/hawkj/issues/1
 
-        if(hasApp()) {
-            sb.append(getApp()).append(SLF);
-            sb.append(hasDlg() ? getDlg() : "").append(SLF);
+        if(app != null) {
+            w.append(app).lf();
+            if (dlg != null) {
+                w.append(dlg);
+            }
+            w.lf();
         }
-		return sb.toString();
+		return w;
 
 		// FIXME - code for ext quote escaping
 		// https://github.com/algermissen/hawkj/issues/1
@@ -313,27 +470,85 @@ public class HawkContext {
 	 */
 	private String generateHmac() throws HawkException {
 
-		String baseString = getBaseString();
+		BaseStringWriter w = BaseStringWriter.acquire();
+		int len = computeMac(w);
 
-		Mac mac;
-		try {
-			mac = Mac.getInstance(getAlgorithm().getMacName());
-		} catch (NoSuchAlgorithmException e) {
-			throw new HawkException("Unknown algorithm "
-					+ getAlgorithm().getMacName(), e);
-		}
+		return new String(Base64.encodeBase64(Arrays.copyOf(w.macBuffer(),
+				len)), Charsets.UTF_8);
+	}
 
-		SecretKeySpec secretKey = new SecretKeySpec(getKey().getBytes(
-				Charsets.UTF_8), getAlgorithm().getMacName());
+	/**
+	 * Compute the raw HMAC into the MAC buffer of a writer.
+	 *
+	 * @param w
+	 *            Writer to use for the base string
+	 * @return Length of the HMAC in w.macBuffer()
+	 * @throws HawkException
+	 */
+	private int computeMac(BaseStringWriter w) throws HawkException {
+		if (macImplementation == MacImplementation.BUILTIN) {
+			return computeBuiltinMac(w);
+		}
+		writeBaseStringFields(w);
+		Mac mac = MacCache.getDefault().getMac(getId(), getHawkKey(),
+				getAlgorithm(), HAWK_HEADER_MAC_PREFIX);
+		return w.doFinal(mac);
+	}
 
+	/**
+	 * Compute the raw HMAC into the MAC buffer of a writer using the built-in
+	 * HMAC implementation. Like the JCA path, this continues from a cached
+	 * midstate that has already absorbed the constant first line.
+	 */
+	private int computeBuiltinMac(BaseStringWriter w) {
+		writeBaseStringFields(w);
+		BuiltinHmac prefixed = MacCache.getDefault().getBuiltinHmac(getId(),
+				getHawkKey(), getAlgorithm(), HAWK_HEADER_MAC_PREFIX);
+		EnginePool pool = EnginePool.getDefault();
+		BuiltinHmac hmac = pool.acquireBuiltinHmac(getAlgorithm());
 		try {
-			mac.init(secretKey);
-		} catch (InvalidKeyException e) {
-			throw new HawkException("Key is invalid ", e);
+			hmac.copyState(prefixed);
+			hmac.update(w.buffer(), 0, w.length());
+			return hmac.doFinal(w.macBuffer(), 0);
+		} finally {
+			pool.releaseBuiltinHmac(getAlgorithm(), hmac);
 		}
+	}
+
+	/**
+	 * Check a received HMAC using a Mac that is keyed with the credentials of
+	 * this context and has not absorbed any input. The Mac is left in its
+	 * keyed state, so it can be reused for contexts with the same credentials.
+	 *
+	 * @param keyed
+	 *            The keyed Mac
+	 * @param hmac
+	 *            The HMAC value to test.
+	 * @return true if the HMAC matches, false otherwise.
+	 * @throws HawkException
+	 */
+	boolean isValidMac(Mac keyed, String hmac) throws HawkException {
+		BaseStringWriter w = writeBaseString(BaseStringWriter.acquire());
+		int len = w.doFinal(keyed);
+		return Util.fixedTimeEqualBase64(w.macBuffer(), len, hmac);
+	}
 
-		return new String(Base64.encodeBase64(mac.doFinal(baseString
-				.getBytes(Charsets.UTF_8))), Charsets.UTF_8);
+	/**
+	 * Check a received HMAC using a built-in HMAC that is keyed with the
+	 * credentials of this context and has not absorbed any input. The HMAC is
+	 * left in its keyed state.
+	 *
+	 * @param keyed
+	 *            The keyed HMAC
+	 * @param hmac
+	 *            The HMAC value to test.
+	 * @return true if the HMAC matches, false otherwise.
+	 */
+	boolean isValidMac(BuiltinHmac keyed, String hmac) {
+		BaseStringWriter w = writeBaseString(BaseStringWriter.acquire());
+		keyed.update(w.buffer(), 0, w.length());
+		int len = keyed.doFinal(w.macBuffer(), 0);
+		return Util.fixedTimeEqualBase64(w.macBuffer(), len, hmac);
 	}
 
 	/**
@@ -349,7 +564,8 @@ public class HawkContext {
 	public HawkContextBuilder_D cloneC() {
 		return offset(this.offset).request(this.method, this.path, this.host, this.port)
 				.credentials(this.id, this.key, this.algorithm).tsAndNonce(
-						this.ts, this.nonce);
+						this.ts, this.nonce).macImplementation(
+						this.macImplementation);
 	}
 
 	public static HawkContextBuilder_A offset(long offset) {
@@ -382,13 +598,14 @@ public class HawkContext {
                 ", ts=" + ts +
                 ", nonce='" + nonce + '\'' +
                 ", id='" + id + '\'' +
-                ", key='" + key + '\'' +
+                ", key='" + key.asString() + '\'' +
                 ", algorithm=" + algorithm +
                 ", hash='" + hash + '\'' +
                 ", ext='" + ext + '\'' +
                 ", app='" + app + '\'' +
                 ", dlg='" + dlg + '\'' +
                 ", offset=" + offset +
+                ", macImplementation=" + macImplementation +
                 '}';
     }
 
@@ -407,6 +624,11 @@ public class HawkContext {
 	public static interface HawkContextBuilder_B {
 		public HawkContextBuilder_C credentials(String id, String key,
 				Algorithm algorithm);
+
+		public HawkContextBuilder_C credentials(String id, HawkKey key,
+				Algorithm algorithm);
+
+		public HawkContextBuilder_C credentials(HawkCredentials credentials);
 	}
 
 	/**
@@ -418,6 +640,8 @@ public class HawkContext {
 
 		public HawkContextBuilder_D body(byte[] body, String contentType);
 
+		public HawkContextBuilder_D bodyBuffer(ByteBuffer body, String contentType);
+
 		public HawkContextBuilder_D hash(String hash);
 
 		public HawkContextBuilder_D ext(String ext);
@@ -426,6 +650,9 @@ public class HawkContext {
 
         public HawkContextBuilder_D dlg(String dlg);
 
+		public HawkContextBuilder_D macImplementation(
+				MacImplementation macImplementation);
+
 		public HawkContext build() throws HawkException;
 	}
 
@@ -436,6 +663,8 @@ public class HawkContext {
 	public static interface HawkContextBuilder_D {
 		public HawkContextBuilder_D body(byte[] body, String contentType);
 
+		public HawkContextBuilder_D bodyBuffer(ByteBuffer body, String contentType);
+
 		public HawkContextBuilder_D hash(String hash);
 
 		public HawkContextBuilder_D ext(String ext);
@@ -444,6 +673,9 @@ public class HawkContext {
 
         public HawkContextBuilder_D dlg(String dlg);
 
+		public HawkContextBuilder_D macImplementation(
+				MacImplementation macImplementation);
+
 		public HawkContext build() throws HawkException;
 	}
 
@@ -458,11 +690,11 @@ public class HawkContext {
 		private String path;
 		private String host;
 		private int port;
-		private byte[] body;
+		private ByteBuffer body;
 		private String hash;
 
 		private String id;
-		private String key;
+		private HawkKey key;
 
 		private long ts;
 		private String nonce;
@@ -478,6 +710,8 @@ public class HawkContext {
 
 		private long offset;
 
+		private MacImplementation macImplementation = MacImplementation.JCA;
+
 		private HawkContextBuilder() {
 		}
 
@@ -546,6 +780,14 @@ public class HawkContext {
 			if (key == null || key.length() == 0) {
 				throw new IllegalArgumentException("Null or empty key not allowed");
 			}
+			this.key = HawkKey.of(key);
+			return this;
+		}
+
+		private HawkContextBuilder key(HawkKey key) {
+			if (key == null) {
+				throw new IllegalArgumentException("Null key not allowed");
+			}
 			this.key = key;
 			return this;
 		}
@@ -570,6 +812,33 @@ public class HawkContext {
 			return id(id).key(key).algorithm(algorithm);
 		}
 
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * net.jalg.hawkj.HawkContext.HawkContextBuilder_B#credentials(java.
+		 * lang.String, net.jalg.hawkj.HawkKey, net.jalg.hawkj.Algorithm)
+		 */
+		public HawkContextBuilder_C credentials(String id, HawkKey key,
+				Algorithm algorithm) {
+			return id(id).key(key).algorithm(algorithm);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * net.jalg.hawkj.HawkContext.HawkContextBuilder_B#credentials(net.jalg
+		 * .hawkj.ext.HawkCredentials)
+		 */
+		public HawkContextBuilder_C credentials(HawkCredentials credentials) {
+			if (credentials == null) {
+				throw new IllegalArgumentException("Null credentials not allowed");
+			}
+			return id(credentials.getId()).key(credentials.getHawkKey())
+					.algorithm(credentials.getAlgorithm());
+		}
+
 		/*
 		 * (non-Javadoc)
 		 *
@@ -591,12 +860,27 @@ public class HawkContext {
 				throw new IllegalArgumentException(
 						"Body must not be null or empty");
 			}
+			return bodyBuffer(ByteBuffer.wrap(body), contentType);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * net.jalg.hawkj.HawkContext.HawkContextBuilder_C#bodyBuffer(java.nio.
+		 * ByteBuffer, java.lang.String)
+		 */
+		public HawkContextBuilder_D bodyBuffer(ByteBuffer body, String contentType) {
+			if (body == null || !body.hasRemaining()) {
+				throw new IllegalArgumentException(
+						"Body must not be null or empty");
+			}
 			// Need the content type
 			if (contentType == null) {
 				throw new IllegalArgumentException(
 						"Content type must not be null");
 			}
-			this.body = body;
+			this.body = body.duplicate();
 			this.contentType = contentType;
 			return this;
 		}
@@ -659,6 +943,29 @@ public class HawkContext {
             return this;
         }
 
+        /**
+         * Select the HMAC implementation. The default is
+         * {@link MacImplementation#JCA}.
+         *
+         * @param macImplementation
+         * @return This builder
+         */
+        public HawkContextBuilder_D macImplementation(
+                MacImplementation macImplementation) {
+            if (macImplementation == null) {
+                throw new IllegalArgumentException(
+                        "Null MAC implementation not allowed");
+            }
+            if (macImplementation == MacImplementation.BUILTIN
+                    && !BuiltinHmac.supports(this.algorithm)) {
+                throw new IllegalArgumentException(
+                        "No built-in HMAC implementation for "
+                                + this.algorithm);
+            }
+            this.macImplementation = macImplementation;
+            return this;
+        }
+
 		/*
 		 * (non-Javadoc)
 		 *
@@ -695,12 +1002,12 @@ public class HawkContext {
 			 * Handle body and alternatively hash values. Generate hash if have
 			 * body.
 			 */
-			if (this.body != null && this.body.length > 0) {
+			if (this.body != null && this.body.hasRemaining()) {
 				if (this.hash != null) {
 					throw new IllegalStateException(
 							"Cannot have body and hash, only either one");
 				}
-				hash = HawkContextBuilder.generateHash(this.algorithm,
+				hash = HawkContextBuilder.generateBufferHash(this.algorithm,
 						this.body, this.contentType);
 			} else {
 				if (!(this.hash == null || this.hash.trim().equals(""))) {
@@ -710,7 +1017,8 @@ public class HawkContext {
 
 			return new HawkContext(this.method, this.path, this.host,
 					this.port, ts, nonce, this.id, this.key, this.algorithm,
-					hash, this.ext, this.app, this.dlg,this.offset);
+					hash, this.ext, this.app, this.dlg,this.offset,
+					this.macImplementation);
 		}
 
 		/**
@@ -724,40 +1032,100 @@ public class HawkContext {
 		public static String generateHash(Algorithm algorithm, byte[] body,
 				String contentType) throws HawkException {
 
+			MessageDigest md = payloadDigest(algorithm, body, contentType);
+			return new String(Base64.encodeBase64(md.digest()),
+					Charsets.UTF_8);
+
+		}
+
+		/**
+		 * Calculate payload hash of the remaining bytes of a buffer. The
+		 * position of the buffer is not changed. Named differently from
+		 * {@link #generateHash(Algorithm, byte[], String)}, so that existing
+		 * calls passing null stay unambiguous.
+		 *
+		 * @param body
+		 *            Heap or direct buffer
+		 * @param contentType
+		 * @return
+		 * @throws HawkException
+		 */
+		public static String generateBufferHash(Algorithm algorithm,
+				ByteBuffer body, String contentType) throws HawkException {
+
+			MessageDigest md = payloadDigest(algorithm, body, contentType);
+			return new String(Base64.encodeBase64(md.digest()),
+					Charsets.UTF_8);
+
+		}
+
+		/**
+		 * Feed the payload hash input into a digest.
+		 *
+		 * @param body
+		 * @param contentType
+		 * @return The digest, ready for digest().
+		 * @throws HawkException
+		 */
+		static MessageDigest payloadDigest(Algorithm algorithm, byte[] body,
+				String contentType) throws HawkException {
+
 			if (body == null || body.length == 0) {
 				throw new IllegalArgumentException(
 						"Body must not be null or empty");
 			}
+			return payloadDigest(algorithm, ByteBuffer.wrap(body), contentType);
+		}
+
+		/**
+		 * Feed the payload hash input into a digest. The remaining bytes of
+		 * the buffer are passed to MessageDigest.update(ByteBuffer), which
+		 * reads heap buffers in place. The position of the buffer is not
+		 * changed.
+		 *
+		 * @param body
+		 * @param contentType
+		 * @return The digest, ready for digest().
+		 * @throws HawkException
+		 */
+		static MessageDigest payloadDigest(Algorithm algorithm,
+				ByteBuffer body, String contentType) throws HawkException {
+
+			if (body == null || !body.hasRemaining()) {
+				throw new IllegalArgumentException(
+						"Body must not be null or empty");
+			}
 
 			if (contentType == null) {
 				throw new IllegalArgumentException(
 						"Content type must not be null or empty");
 			}
-			/*
-			 * Strip any parameters from media type. (If we have no match, first
-			 * element will be original) E.g. from 'application/atom;type=feed'
-			 * make 'application/atom'.
-			 */
-			String ct = contentType.split(";")[0].trim();
-
-			String baseString = new StringBuilder(HAWK_PAYLOAD_PREFIX)
-					.append(SLF).append(ct).append(SLF).toString();
-
-			try {
-				MessageDigest md = MessageDigest.getInstance(algorithm
-						.getMessageDigestName());
-
+			MessageDigest md = PAYLOAD_DIGESTS.getDigest(algorithm,
+					mediaType(contentType));
+			md.update(body.duplicate());
+			md.update(BLF);
+			return md;
+		}
 
-				md.update(baseString.getBytes(Charsets.UTF_8));
-				md.update(body);
-				md.update(BLF);
-				return new String(Base64.encodeBase64(md.digest()),
-						Charsets.UTF_8);
-			} catch (NoSuchAlgorithmException e1) {
-				throw new HawkException("Digest algorithm "
-						+ algorithm.getMessageDigestName() + " not found", e1);
+		/**
+		 * Strip any parameters from a content type, e.g. from
+		 * 'application/atom;type=feed' make 'application/atom'. Content types
+		 * without parameters and surrounding whitespace are returned as they
+		 * are.
+		 */
+		static String mediaType(String contentType) {
+			int end = contentType.indexOf(';');
+			if (end < 0) {
+				end = contentType.length();
 			}
-
+			int start = 0;
+			while (start < end && contentType.charAt(start) <= ' ') {
+				start++;
+			}
+			while (end > start && contentType.charAt(end - 1) <= ' ') {
+				end--;
+			}
+			return contentType.substring(start, end);
 		}
 
 		@Override
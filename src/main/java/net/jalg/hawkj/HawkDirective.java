@@ -0,0 +1,151 @@
+package net.jalg.hawkj;
+
+/**
+ * The parameter names of the Hawk Authorization, Server-Authorization and
+ * WWW-Authenticate headers.
+ *
+ * {@link #match(CharSequence, int, int)} maps a parameter name to its
+ * directive without allocating, so that {@link AuthDirectiveBuilder} and
+ * {@link AuthDirectiveRangeBuilder} implementations can dispatch with a
+ * switch statement.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public enum HawkDirective {
+
+	ID("id"),
+
+	MAC("mac"),
+
+	HASH("hash"),
+
+	TS("ts"),
+
+	NONCE("nonce"),
+
+	EXT("ext"),
+
+	APP("app"),
+
+	DLG("dlg"),
+
+	TSM("tsm"),
+
+	ERROR("error");
+
+	/** The parameter name, in lower case */
+	private final String name;
+
+	private HawkDirective(final String name) {
+		this.name = name;
+	}
+
+	public final String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Find the directive for a parameter name, ignoring case.
+	 *
+	 * @param name
+	 *            The parameter name
+	 * @return The directive or null, if the name is not a Hawk parameter.
+	 */
+	public static HawkDirective match(CharSequence name) {
+		return match(name, 0, name.length());
+	}
+
+	/**
+	 * Find the directive for a range of characters, ignoring case.
+	 *
+	 * The candidate is selected by length and first character; only the
+	 * candidate's name is then compared.
+	 *
+	 * @param s
+	 * @param start
+	 *            Start of the name, inclusive.
+	 * @param end
+	 *            End of the name, exclusive.
+	 * @return The directive or null, if the name is not a Hawk parameter.
+	 */
+	public static HawkDirective match(CharSequence s, int start, int end) {
+		HawkDirective candidate;
+		switch (end - start) {
+		case 2:
+			switch (lower(s.charAt(start))) {
+			case 'i':
+				candidate = ID;
+				break;
+			case 't':
+				candidate = TS;
+				break;
+			default:
+				return null;
+			}
+			break;
+		case 3:
+			switch (lower(s.charAt(start))) {
+			case 'm':
+				candidate = MAC;
+				break;
+			case 'e':
+				candidate = EXT;
+				break;
+			case 'a':
+				candidate = APP;
+				break;
+			case 'd':
+				candidate = DLG;
+				break;
+			case 't':
+				candidate = TSM;
+				break;
+			default:
+				return null;
+			}
+			break;
+		case 4:
+			candidate = HASH;
+			break;
+		case 5:
+			switch (lower(s.charAt(start))) {
+			case 'n':
+				candidate = NONCE;
+				break;
+			case 'e':
+				candidate = ERROR;
+				break;
+			default:
+				return null;
+			}
+			break;
+		default:
+			return null;
+		}
+		return candidate.matches(s, start) ? candidate : null;
+	}
+
+	/**
+	 * Compare the name with the characters at start. The length has already
+	 * been checked.
+	 */
+	private boolean matches(CharSequence s, int start) {
+		String n = this.name;
+		for (int i = 0; i < n.length(); i++) {
+			char c = s.charAt(start + i);
+			char e = n.charAt(i);
+			// Lower case names match directly, upper case letters by setting
+			// their case bit. Names only contain letters.
+			if (c != e && (c | 0x20) != e) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int lower(char c) {
+		return c | 0x20;
+	}
+
+}
@@ -32,14 +32,42 @@ public enum HawkError {
 	}
 	
 	public static HawkError fromString(String code) {
-		HawkError error = null; // Default
+		if (code == null) {
+			return null;
+		}
+		return fromCode(code, 0, code.length());
+	}
+
+	/**
+	 * Find the error for the code in a range of characters, without creating
+	 * a String.
+	 *
+	 * @param s
+	 * @param start
+	 *            Start of the code, inclusive.
+	 * @param end
+	 *            End of the code, exclusive.
+	 * @return The error or null, if the code is not recognized.
+	 */
+	public static HawkError fromCode(CharSequence s, int start, int end) {
 		for (HawkError e : HawkError.values()) {
-			if (e.getCode().equals(code)) {
-				error = e;
-				break;
+			if (e.matches(s, start, end)) {
+				return e;
+			}
+		}
+		return null;
+	}
+
+	private boolean matches(CharSequence s, int start, int end) {
+		if (end - start != code.length()) {
+			return false;
+		}
+		for (int i = 0; i < code.length(); i++) {
+			if (s.charAt(start + i) != code.charAt(i)) {
+				return false;
 			}
 		}
-		return error;
+		return true;
 	}
 
 }
\ No newline at end of file
@@ -5,22 +5,43 @@ package net.jalg.hawkj;
  * This is a runtime exception because there is typically no sensible way to
  * react on any of the exceptions encapsulated. 
  * 
+ * Filling in the stack trace is the most expensive part of creating an
+ * exception. Servers that reject many malformed requests can turn it off for
+ * this class and {@link AuthHeaderParsingException} with
+ * {@link #setStackTraceEnabled(boolean)} or by setting the system property
+ * net.jalg.hawkj.stacklessExceptions to true.
+ * 
  * @author Jan Algermissen, http://jalg.net
  *
  */
 public class HawkException extends RuntimeException {
 
+	private static volatile boolean stackTraceEnabled = !Boolean
+			.getBoolean("net.jalg.hawkj.stacklessExceptions");
 
 	public HawkException(String message, Throwable cause) {
-		super(message, cause);
+		super(message, cause, true, stackTraceEnabled);
 	}
 
 	public HawkException(String message) {
-		super(message);
+		this(message, null);
 	}
 
 	public HawkException(Throwable cause) {
-		super(cause);
+		this(cause == null ? null : cause.toString(), cause);
+	}
+
+	/**
+	 * Enable or disable stack traces of Hawk exceptions created from now on.
+	 *
+	 * @param enabled
+	 */
+	public static void setStackTraceEnabled(boolean enabled) {
+		stackTraceEnabled = enabled;
+	}
+
+	public static boolean isStackTraceEnabled() {
+		return stackTraceEnabled;
 	}
 
 }
@@ -0,0 +1,140 @@
+package net.jalg.hawkj;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import net.jalg.hawkj.util.Charsets;
+
+/**
+ * Immutable, pre-encoded key material of Hawk credentials.
+ *
+ * Hawk keys are strings that are used in their UTF-8 encoding. A HawkKey
+ * encodes the key once and creates the {@link SecretKey} for each
+ * {@link Algorithm} at most once, so that MAC computation does not need to
+ * encode the key or allocate key specs per request. Applications should
+ * create one HawkKey per credentials and keep it alongside them (see
+ * {@link net.jalg.hawkj.ext.HawkCredentials#getHawkKey()}).
+ * <p>
+ * Two HawkKeys are equal if their encoded bytes are equal. toString() does not
+ * reveal the key.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public final class HawkKey {
+
+	private final byte[] bytes;
+	private final int hashCode;
+	private volatile String string;
+	private final AtomicReferenceArray<SecretKey> secretKeys = new AtomicReferenceArray<SecretKey>(
+			Algorithm.values().length);
+
+	private HawkKey(byte[] bytes, String string) {
+		if (bytes.length == 0) {
+			throw new IllegalArgumentException("Empty key not allowed");
+		}
+		this.bytes = bytes;
+		this.string = string;
+		this.hashCode = Arrays.hashCode(bytes);
+	}
+
+	/**
+	 * Create a key from its string representation.
+	 *
+	 * @param key
+	 *            The key, will be UTF-8 encoded.
+	 * @return The key
+	 */
+	public static HawkKey of(String key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Null key not allowed");
+		}
+		return new HawkKey(key.getBytes(Charsets.UTF_8), key);
+	}
+
+	/**
+	 * Create a key from already encoded key bytes.
+	 *
+	 * @param key
+	 *            The key bytes, will be copied.
+	 * @return The key
+	 */
+	public static HawkKey of(byte[] key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Null key not allowed");
+		}
+		return new HawkKey(key.clone(), null);
+	}
+
+	/**
+	 * @return A copy of the encoded key bytes.
+	 */
+	public byte[] getEncoded() {
+		return bytes.clone();
+	}
+
+	/**
+	 * @return The key as a string. For keys created from bytes this is the
+	 *         UTF-8 decoding of the bytes.
+	 */
+	public String asString() {
+		String s = string;
+		if (s == null) {
+			s = new String(bytes, Charsets.UTF_8);
+			string = s;
+		}
+		return s;
+	}
+
+	/**
+	 * Get the key for use with the Mac of the given algorithm.
+	 *
+	 * @param algorithm
+	 * @return The secret key, created on first use and shared afterwards.
+	 */
+	public SecretKey getSecretKey(Algorithm algorithm) {
+		int i = algorithm.ordinal();
+		SecretKey secretKey = secretKeys.get(i);
+		if (secretKey == null) {
+			secretKeys.compareAndSet(i, null,
+					new SecretKeySpec(bytes, algorithm.getMacName()));
+			secretKey = secretKeys.get(i);
+		}
+		return secretKey;
+	}
+
+	/**
+	 * The encoded key bytes without copying. Must not be modified.
+	 */
+	byte[] bytes() {
+		return bytes;
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof HawkKey)) {
+			return false;
+		}
+		HawkKey other = (HawkKey) obj;
+		return hashCode == other.hashCode
+				&& MessageDigest.isEqual(bytes, other.bytes);
+	}
+
+	@Override
+	public String toString() {
+		return "HawkKey [length=" + bytes.length + "]";
+	}
+
+}
@@ -0,0 +1,347 @@
+package net.jalg.hawkj;
+
+import java.nio.ByteBuffer;
+
+import net.jalg.hawkj.ext.HawkCredentials;
+import net.jalg.hawkj.ext.HawkCredentialsResolver;
+import net.jalg.hawkj.ext.HawkCredentialsSequenceResolver;
+
+/**
+ * Parses and verifies incoming Authorization headers in one step.
+ *
+ * The usual server side sequence of parsing an {@link AuthorizationHeader},
+ * building a {@link HawkContext} from it and the resolved credentials and
+ * then checking the mac copies every header value several times. This class
+ * parses the header into a reused {@link AuthorizationHeaderView}, resolves
+ * the credentials and feeds the received values from the header straight
+ * into the MAC, without creating either of these objects. A
+ * {@link HawkCredentialsSequenceResolver} is given the id range of the
+ * header, other resolvers the id as a String.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * HawkRequestVerifier verifier = new HawkRequestVerifier(resolver);
+ * if (verifier.verify(header, method, path, host, port)) {
+ *     HawkCredentials credentials = verifier.getCredentials();
+ *     long ts = verifier.getHeader().getTs();
+ *     ...
+ * }
+ * </pre>
+ *
+ * {@link #check(CharSequence, String, String, String, int)} reports
+ * malformed headers, unknown ids and invalid macs as a {@link HawkStatus}
+ * instead, without creating an exception that is thrown to the caller.
+ * <p>
+ * The verifier only checks the mac. Timestamp and nonce checks, and the
+ * payload hash check with {@link #isValidHash(ByteBuffer, String)}, remain
+ * the responsibility of the caller.
+ * <p>
+ * Instances are reusable but not thread safe; create one per thread or
+ * connection.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public final class HawkRequestVerifier {
+
+	private final HawkCredentialsResolver resolver;
+	private final HawkCredentialsSequenceResolver sequenceResolver;
+	private final AuthorizationHeaderView view = new AuthorizationHeaderView();
+	private HawkCredentials credentials;
+	private String message;
+
+	public HawkRequestVerifier(HawkCredentialsResolver resolver) {
+		if (resolver == null) {
+			throw new IllegalArgumentException("Resolver must not be null");
+		}
+		this.resolver = resolver;
+		this.sequenceResolver = resolver instanceof HawkCredentialsSequenceResolver
+				? (HawkCredentialsSequenceResolver) resolver : null;
+	}
+
+	/**
+	 * Create a verifier that parses headers with the given limits.
+	 *
+	 * @param resolver
+	 * @param limits
+	 */
+	public HawkRequestVerifier(HawkCredentialsResolver resolver,
+			AuthHeaderLimits limits) {
+		this(resolver);
+		view.setLimits(limits);
+	}
+
+	/**
+	 * Parse and verify an Authorization header value.
+	 *
+	 * @param header
+	 *            The received header value
+	 * @param method
+	 * @param path
+	 * @param host
+	 * @param port
+	 * @return true if the id is known and the mac matches, false otherwise.
+	 * @throws AuthHeaderParsingException
+	 *             If the header cannot be parsed.
+	 * @throws HawkException
+	 */
+	public boolean verify(CharSequence header, String method, String path,
+			String host, int port) throws AuthHeaderParsingException,
+			HawkException {
+		credentials = null;
+		message = null;
+		view.parse(header);
+		return verifyView(method, path, host, port) == HawkStatus.OK;
+	}
+
+	/**
+	 * Parse and verify an Authorization header value from its raw bytes.
+	 *
+	 * @see AuthorizationHeaderView#authorization(byte[], int, int)
+	 *
+	 * @param bytes
+	 * @param offset
+	 *            Start of the header value in bytes.
+	 * @param length
+	 *            Length of the header value.
+	 * @param method
+	 * @param path
+	 * @param host
+	 * @param port
+	 * @return true if the id is known and the mac matches, false otherwise.
+	 * @throws AuthHeaderParsingException
+	 *             If the header cannot be parsed.
+	 * @throws HawkException
+	 */
+	public boolean verify(byte[] bytes, int offset, int length, String method,
+			String path, String host, int port)
+			throws AuthHeaderParsingException, HawkException {
+		credentials = null;
+		message = null;
+		view.parse(bytes, offset, length);
+		return verifyView(method, path, host, port) == HawkStatus.OK;
+	}
+
+	/**
+	 * Parse and verify an Authorization header value from the raw bytes
+	 * between position and limit of a buffer. The position of the buffer is
+	 * not changed.
+	 *
+	 * @see AuthorizationHeaderView#authorization(ByteBuffer)
+	 *
+	 * @param buffer
+	 * @param method
+	 * @param path
+	 * @param host
+	 * @param port
+	 * @return true if the id is known and the mac matches, false otherwise.
+	 * @throws AuthHeaderParsingException
+	 *             If the header cannot be parsed.
+	 * @throws HawkException
+	 */
+	public boolean verify(ByteBuffer buffer, String method, String path,
+			String host, int port) throws AuthHeaderParsingException,
+			HawkException {
+		credentials = null;
+		message = null;
+		view.parse(buffer);
+		return verifyView(method, path, host, port) == HawkStatus.OK;
+	}
+
+	/**
+	 * Parse and verify an Authorization header value without throwing an
+	 * exception for malformed headers.
+	 *
+	 * @see #verify(CharSequence, String, String, String, int)
+	 *
+	 * @param header
+	 *            The received header value, may be null.
+	 * @param method
+	 * @param path
+	 * @param host
+	 * @param port
+	 * @return {@link HawkStatus#OK} if the id is known and the mac matches,
+	 *         otherwise the reason of the failure.
+	 * @throws HawkException
+	 */
+	public HawkStatus check(CharSequence header, String method, String path,
+			String host, int port) throws HawkException {
+		credentials = null;
+		message = null;
+		if (header == null) {
+			return invalidHeader("Missing header value");
+		}
+		view.setStackless(true);
+		try {
+			view.parse(header);
+		} catch (AuthHeaderParsingException e) {
+			return invalidHeader(e.getMessage());
+		} finally {
+			view.setStackless(false);
+		}
+		return verifyView(method, path, host, port);
+	}
+
+	/**
+	 * Parse and verify an Authorization header value from its raw bytes
+	 * without throwing an exception for malformed headers.
+	 *
+	 * @see #verify(byte[], int, int, String, String, String, int)
+	 *
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @param method
+	 * @param path
+	 * @param host
+	 * @param port
+	 * @return {@link HawkStatus#OK} if the id is known and the mac matches,
+	 *         otherwise the reason of the failure.
+	 * @throws HawkException
+	 */
+	public HawkStatus check(byte[] bytes, int offset, int length,
+			String method, String path, String host, int port)
+			throws HawkException {
+		credentials = null;
+		message = null;
+		view.setStackless(true);
+		try {
+			view.parse(bytes, offset, length);
+		} catch (AuthHeaderParsingException e) {
+			return invalidHeader(e.getMessage());
+		} finally {
+			view.setStackless(false);
+		}
+		return verifyView(method, path, host, port);
+	}
+
+	/**
+	 * Parse and verify an Authorization header value from the raw bytes of a
+	 * buffer without throwing an exception for malformed headers.
+	 *
+	 * @see #verify(ByteBuffer, String, String, String, int)
+	 *
+	 * @param buffer
+	 * @param method
+	 * @param path
+	 * @param host
+	 * @param port
+	 * @return {@link HawkStatus#OK} if the id is known and the mac matches,
+	 *         otherwise the reason of the failure.
+	 * @throws HawkException
+	 */
+	public HawkStatus check(ByteBuffer buffer, String method, String path,
+			String host, int port) throws HawkException {
+		credentials = null;
+		message = null;
+		view.setStackless(true);
+		try {
+			view.parse(buffer);
+		} catch (AuthHeaderParsingException e) {
+			return invalidHeader(e.getMessage());
+		} finally {
+			view.setStackless(false);
+		}
+		return verifyView(method, path, host, port);
+	}
+
+	private HawkStatus invalidHeader(String message) {
+		this.message = message;
+		return HawkStatus.INVALID_HEADER;
+	}
+
+	private HawkStatus verifyView(String method, String path, String host,
+			int port) throws HawkException {
+		CharSequence id = view.getIdSequence();
+		if (id == null || view.getTs() <= 0 || !view.hasNonce()
+				|| !view.hasMac()) {
+			return invalidHeader("Missing id, ts, nonce or mac");
+		}
+		HawkCredentials c = sequenceResolver != null ? sequenceResolver
+				.resolveSequence(id) : resolver.resolve(id.toString());
+		if (c == null) {
+			return HawkStatus.UNKNOWN_ID;
+		}
+		if (!view.isValidMac(method, path, host, port, c.getId(),
+				c.getHawkKey(), c.getAlgorithm())) {
+			return HawkStatus.INVALID_MAC;
+		}
+		credentials = c;
+		return HawkStatus.OK;
+	}
+
+	/**
+	 * Check whether a given payload matches the hash of the last verified
+	 * header.
+	 *
+	 * @param body
+	 *            The received payload
+	 * @param contentType
+	 *            The content type of the payload
+	 * @return true if the last header was verified, has a hash and the hash
+	 *         matches the payload, false otherwise.
+	 * @throws HawkException
+	 */
+	public boolean isValidHash(byte[] body, String contentType)
+			throws HawkException {
+		if (body == null) {
+			throw new IllegalArgumentException("Body must not be null or empty");
+		}
+		return isValidHash(ByteBuffer.wrap(body), contentType);
+	}
+
+	/**
+	 * Check whether a given payload held in a heap or direct buffer matches
+	 * the hash of the last verified header. The position of the buffer is not
+	 * changed.
+	 *
+	 * @see #isValidHash(byte[], String)
+	 *
+	 * @param body
+	 * @param contentType
+	 * @return
+	 * @throws HawkException
+	 */
+	public boolean isValidHash(ByteBuffer body, String contentType)
+			throws HawkException {
+		if (credentials == null) {
+			return false;
+		}
+		return view.isValidHash(body, contentType, credentials.getAlgorithm());
+	}
+
+	/**
+	 * @return The credentials of the last verified header, or null if the
+	 *         last verification failed.
+	 */
+	public HawkCredentials getCredentials() {
+		return credentials;
+	}
+
+	/**
+	 * @return A description of the last failure reported as
+	 *         {@link HawkStatus#INVALID_HEADER}, or null.
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * @return The view of the last parsed header. It is overwritten by the
+	 *         next verification.
+	 */
+	public AuthorizationHeaderView getHeader() {
+		return view;
+	}
+
+	/**
+	 * Release the references to the last header and credentials.
+	 */
+	public void reset() {
+		credentials = null;
+		message = null;
+		view.reset();
+	}
+
+}
@@ -0,0 +1,61 @@
+package net.jalg.hawkj;
+
+/**
+ * Result of an operation that reports failures by status instead of throwing
+ * an exception.
+ *
+ * @param <T>
+ *            Type of the value of successful results.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public final class HawkResult<T> {
+
+	private final HawkStatus status;
+	private final T value;
+	private final String message;
+
+	private HawkResult(HawkStatus status, T value, String message) {
+		this.status = status;
+		this.value = value;
+		this.message = message;
+	}
+
+	static <T> HawkResult<T> ok(T value) {
+		return new HawkResult<T>(HawkStatus.OK, value, null);
+	}
+
+	static <T> HawkResult<T> failure(HawkStatus status, String message) {
+		return new HawkResult<T>(status, null, message);
+	}
+
+	public HawkStatus getStatus() {
+		return status;
+	}
+
+	public boolean isOk() {
+		return status.isOk();
+	}
+
+	/**
+	 * @return The value or null, if the operation failed.
+	 */
+	public T getValue() {
+		return value;
+	}
+
+	/**
+	 * @return A description of the failure or null, if the operation
+	 *         succeeded.
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	@Override
+	public String toString() {
+		return message == null ? status.toString() : status + ": " + message;
+	}
+
+}
@@ -0,0 +1,27 @@
+package net.jalg.hawkj;
+
+/**
+ * Outcome of parsing or verifying a header without exceptions.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public enum HawkStatus {
+
+	/** The header was parsed, or verified, successfully. */
+	OK,
+
+	/** The header cannot be parsed or lacks a required parameter. */
+	INVALID_HEADER,
+
+	/** No credentials were found for the id of the header. */
+	UNKNOWN_ID,
+
+	/** The mac does not match. */
+	INVALID_MAC;
+
+	public final boolean isOk() {
+		return this == OK;
+	}
+
+}
@@ -0,0 +1,169 @@
+package net.jalg.hawkj;
+
+import net.jalg.hawkj.ext.HawkCredentials;
+import net.jalg.hawkj.util.Base64;
+import net.jalg.hawkj.util.Charsets;
+
+/**
+ * Eager initialization of the JCA engines and the internal caches used by
+ * hawkj.
+ *
+ * The first requests after start-up pay for loading JCA providers, class
+ * initialization of Mac and MessageDigest implementations, JIT compilation of
+ * the signing and verification code, and creating the keyed prototypes of the
+ * credentials they use. Calling {@link #run(int)} and
+ * {@link #prime(Iterable, String...)} before a server reports readiness moves
+ * this cost out of the request path.
+ * <p>
+ * What is warmed is shared by all threads:
+ * <ul>
+ * <li>{@link #run(int)} resolves the JCA providers of all {@link Algorithm}s,
+ * initializes the engine classes and runs synthetic round trips so that the
+ * JIT compiles the code paths. It adds prototypes for its own synthetic
+ * credentials to the default {@link MacCache}, which are evicted like any
+ * other entry.</li>
+ * <li>{@link #prime(Iterable, String...)} puts the prototypes of the given
+ * credentials and content types into the default {@link MacCache} and the
+ * payload digest cache, so that the first real request of each client clones
+ * a prototype instead of creating one.</li>
+ * </ul>
+ * Per-thread state is not warmed: request threads fill their slots of a
+ * {@link ThreadLocalEnginePool} and their base string buffers on their first
+ * request. These are plain allocations without provider lookups.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public final class HawkWarmup {
+
+	public static final int DEFAULT_ITERATIONS = 10000;
+
+	private static final String ID = "hawkj-warmup";
+	private static final String KEY = "hawkj-warmup-key";
+	private static final byte[] BODY = "hawkj warm-up payload"
+			.getBytes(Charsets.UTF_8);
+	private static final String CONTENT_TYPE = "text/plain";
+
+	private HawkWarmup() {
+	}
+
+	/**
+	 * Warm up with {@link #DEFAULT_ITERATIONS} iterations.
+	 *
+	 * @return Time taken in milliseconds.
+	 * @throws HawkException
+	 *             If an algorithm is not available.
+	 */
+	public static long run() throws HawkException {
+		return run(DEFAULT_ITERATIONS);
+	}
+
+	/**
+	 * Resolve the Mac and MessageDigest providers of all {@link Algorithm}s
+	 * and run a number of synthetic sign/parse/verify iterations.
+	 *
+	 * @param iterations
+	 *            Number of synthetic iterations per algorithm, 0 to only
+	 *            resolve the engines.
+	 * @return Time taken in milliseconds.
+	 * @throws HawkException
+	 *             If an algorithm is not available or a synthetic
+	 *             verification fails.
+	 */
+	public static long run(int iterations) throws HawkException {
+		if (iterations < 0) {
+			throw new IllegalArgumentException(
+					"Number of iterations must not be negative");
+		}
+		long start = System.nanoTime();
+
+		for (Algorithm algorithm : Algorithm.values()) {
+			EnginePool.newMac(algorithm);
+			EnginePool.newDigest(algorithm);
+		}
+		Base64.decodeBase64(Base64.encodeBase64(BODY));
+
+		for (int i = 0; i < iterations; i++) {
+			for (Algorithm algorithm : Algorithm.values()) {
+				exercise(algorithm, MacImplementation.JCA, i);
+				if (BuiltinHmac.supports(algorithm)) {
+					exercise(algorithm, MacImplementation.BUILTIN, i);
+				}
+			}
+		}
+
+		return (System.nanoTime() - start) / 1000000L;
+	}
+
+	/**
+	 * Create the keyed prototypes for the header and timestamp MACs of the
+	 * given credentials, and the payload digest prototypes for their
+	 * algorithms and the given content types.
+	 *
+	 * Prototypes for {@link MacImplementation#BUILTIN} are still created on
+	 * first use. Only as many prototypes as fit into the caches are kept.
+	 *
+	 * @param credentials
+	 *            The credentials of the clients expected first.
+	 * @param contentTypes
+	 *            The content types of payloads expected with hashes.
+	 * @throws HawkException
+	 *             If an algorithm is not available or a key is invalid.
+	 */
+	public static void prime(Iterable<? extends HawkCredentials> credentials,
+			String... contentTypes) throws HawkException {
+		MacCache cache = MacCache.getDefault();
+		boolean[] digests = new boolean[Algorithm.values().length];
+		for (HawkCredentials c : credentials) {
+			cache.getMac(c.getId(), c.getHawkKey(), c.getAlgorithm(),
+					HawkContext.HAWK_HEADER_MAC_PREFIX);
+			cache.getMac(c.getId(), c.getHawkKey(), c.getAlgorithm(),
+					HawkWwwAuthenticateContext.HAWK_TS_MAC_PREFIX);
+			digests[c.getAlgorithm().ordinal()] = true;
+		}
+		for (Algorithm algorithm : Algorithm.values()) {
+			if (digests[algorithm.ordinal()]) {
+				for (String contentType : contentTypes) {
+					HawkContext.HawkContextBuilder.generateHash(algorithm,
+							BODY, contentType);
+				}
+			}
+		}
+	}
+
+	/**
+	 * One round trip: create and serialize headers, parse them, and verify
+	 * them against the context.
+	 */
+	private static void exercise(Algorithm algorithm,
+			MacImplementation macImplementation, int i) throws HawkException {
+		HawkContext context = HawkContext
+				.request("POST", "/warmup", "localhost", 8080)
+				.credentials(ID, KEY, algorithm).tsAndNonce(i + 1, "warmup")
+				.body(BODY, CONTENT_TYPE).ext("warmup")
+				.macImplementation(macImplementation).build();
+		String header = context.createAuthorizationHeader().toString();
+
+		boolean valid;
+		try {
+			AuthorizationHeader parsed = AuthorizationHeader
+					.authorization(header);
+			valid = context.isValidMac(parsed.getMac())
+					&& context.isValidHash(BODY, CONTENT_TYPE);
+
+			HawkWwwAuthenticateContext wwwContext = HawkWwwAuthenticateContext
+					.ts().credentials(ID, KEY, algorithm).build();
+			WwwAuthenticateHeader www = WwwAuthenticateHeader
+					.wwwAuthenticate(wwwContext.createWwwAuthenticateHeader()
+							.toString());
+			valid = valid && wwwContext.isValidTimestampMac(www.getTsm());
+		} catch (AuthHeaderParsingException e) {
+			throw new HawkException("Warm-up failed to parse its own header", e);
+		}
+		if (!valid) {
+			throw new HawkException("Warm-up verification failed for "
+					+ algorithm + " (" + macImplementation + ")");
+		}
+	}
+
+}
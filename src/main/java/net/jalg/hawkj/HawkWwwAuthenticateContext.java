@@ -1,12 +1,11 @@
 package net.jalg.hawkj;
 
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 
 import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 
 import net.jalg.hawkj.WwwAuthenticateHeader.WwwAuthenticateBuilder;
+import net.jalg.hawkj.ext.HawkCredentials;
 import net.jalg.hawkj.util.Base64;
 import net.jalg.hawkj.util.Charsets;
 
@@ -46,15 +45,16 @@ import net.jalg.hawkj.util.Charsets;
 public class HawkWwwAuthenticateContext {
 
 	public static final String SCHEME = "Hawk";
-	private static final String SLF = "\n"; // String-LineFeed
 	private static final String HAWK_VERSION = "1";
 	private static final String HAWK_TS_PREFIX = "hawk." + HAWK_VERSION + ".ts";
+	/** Constant start of every timestamp MAC input, absorbed by cached Macs */
+	static final String HAWK_TS_MAC_PREFIX = HAWK_TS_PREFIX + "\n";
 
 	private final long ts;
 	private final String tsm;
 
 	private final String id;
-	private final String key;
+	private final HawkKey key;
 	private final Algorithm algorithm;
 
 	private final HawkError error;
@@ -69,7 +69,7 @@ public class HawkWwwAuthenticateContext {
 	}
 
 	private HawkWwwAuthenticateContext(long ts, String tsm, String id,
-			String key, Algorithm algorithm) {
+			HawkKey key, Algorithm algorithm) {
 		this.ts = ts;
 		this.tsm = tsm;
 		this.id = id;
@@ -96,6 +96,10 @@ public class HawkWwwAuthenticateContext {
 	}
 
 	public String getKey() {
+		return this.key == null ? null : this.key.asString();
+	}
+
+	public HawkKey getHawkKey() {
 		return this.key;
 	}
 
@@ -172,22 +176,23 @@ public class HawkWwwAuthenticateContext {
 	 * @throws HawkException
 	 */
 	public boolean isValidTimestampMac(String hmac) throws HawkException {
-		String this_hmac = this.generateHmac();
-		return Util.fixedTimeEqual(this_hmac, hmac);
+		BaseStringWriter w = BaseStringWriter.acquire();
+		int len = computeMac(w);
+		return Util.fixedTimeEqualBase64(w.macBuffer(), len, hmac);
 	}
 
 	/**
-	 * Generate base string for timestamp HMAC generation.
+	 * Write base string for timestamp HMAC generation, without the constant
+	 * first line which the Mac has already absorbed.
 	 *
-	 * @return
+	 * @return The writer
 	 */
-	private String getBaseString() {
+	private BaseStringWriter writeBaseString(BaseStringWriter w) {
 		if (!hasTs()) {
 			throw new IllegalStateException(
 					"This HawkWwwAuthenticateContext has no timestamp");
 		}
-		return new StringBuilder(HAWK_TS_PREFIX).append(SLF).append(getTs())
-				.append(SLF).toString();
+		return w.append(getTs()).lf();
 	}
 
 	@Override
@@ -204,26 +209,26 @@ public class HawkWwwAuthenticateContext {
 	 */
 	private String generateHmac() throws HawkException {
 
-		String baseString = getBaseString();
+		BaseStringWriter w = BaseStringWriter.acquire();
+		int len = computeMac(w);
 
-		Mac mac;
-		try {
-			mac = Mac.getInstance(getAlgorithm().getMacName());
-		} catch (NoSuchAlgorithmException e) {
-			throw new HawkException("Unknown algorithm "
-					+ getAlgorithm().getMacName(), e);
-		}
-
-		SecretKeySpec secret_key = new SecretKeySpec(getKey().getBytes(
-				Charsets.UTF_8), getAlgorithm().getMacName());
-		try {
-			mac.init(secret_key);
-		} catch (InvalidKeyException e) {
-			throw new HawkException("Key is invalid ", e);
-		}
+		return new String(Base64.encodeBase64(Arrays.copyOf(w.macBuffer(),
+				len)), Charsets.UTF_8);
+	}
 
-		return new String(Base64.encodeBase64(mac.doFinal(baseString
-				.getBytes(Charsets.UTF_8))), Charsets.UTF_8);
+	/**
+	 * Compute the raw HMAC into the MAC buffer of a writer.
+	 *
+	 * @param w
+	 *            Writer to use for the base string
+	 * @return Length of the HMAC in w.macBuffer()
+	 * @throws HawkException
+	 */
+	private int computeMac(BaseStringWriter w) throws HawkException {
+		writeBaseString(w);
+		Mac mac = MacCache.getDefault().getMac(getId(), getHawkKey(),
+				getAlgorithm(), HAWK_TS_MAC_PREFIX);
+		return w.doFinal(mac);
 	}
 
 	/**
@@ -254,6 +259,12 @@ public class HawkWwwAuthenticateContext {
 	public static interface HawkWwwAuthenticateContextBuilder_A {
 		public HawkWwwAuthenticateContextBuilder credentials(String id,
 				String key, Algorithm algorithm);
+
+		public HawkWwwAuthenticateContextBuilder credentials(String id,
+				HawkKey key, Algorithm algorithm);
+
+		public HawkWwwAuthenticateContextBuilder credentials(
+				HawkCredentials credentials);
 	}
 
 	/**
@@ -264,7 +275,7 @@ public class HawkWwwAuthenticateContext {
 			HawkWwwAuthenticateContextBuilder_A {
 
 		private String id;
-		private String key;
+		private HawkKey key;
 		private Algorithm algorithm;
 
 		private long ts;
@@ -303,6 +314,14 @@ public class HawkWwwAuthenticateContext {
 			if (key == null || key.length() == 0) {
 				throw new IllegalArgumentException("Null or empty key not allowed");
 			}
+			this.key = HawkKey.of(key);
+			return this;
+		}
+
+		private HawkWwwAuthenticateContextBuilder key(HawkKey key) {
+			if (key == null) {
+				throw new IllegalArgumentException("Null key not allowed");
+			}
 			this.key = key;
 			return this;
 		}
@@ -325,6 +344,20 @@ public class HawkWwwAuthenticateContext {
 			return id(id).key(key).algorithm(algorithm);
 		}
 
+		public HawkWwwAuthenticateContextBuilder credentials(String id,
+				HawkKey key, Algorithm algorithm) {
+			return id(id).key(key).algorithm(algorithm);
+		}
+
+		public HawkWwwAuthenticateContextBuilder credentials(
+				HawkCredentials credentials) {
+			if (credentials == null) {
+				throw new IllegalArgumentException("Null credentials not allowed");
+			}
+			return id(credentials.getId()).key(credentials.getHawkKey())
+					.algorithm(credentials.getAlgorithm());
+		}
+
 
 
 		public HawkWwwAuthenticateContext build() throws HawkException {
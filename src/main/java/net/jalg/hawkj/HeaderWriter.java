@@ -0,0 +1,183 @@
+package net.jalg.hawkj;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Helpers for serializing headers into an Appendable or ByteBuffer without
+ * temporary strings.
+ *
+ * Header values are written to byte buffers as ISO-8859-1.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+final class HeaderWriter {
+
+	private static final char DQUOTE = '"';
+	private static final char BACKSLASH = '\\';
+
+	private HeaderWriter() {
+	}
+
+	/**
+	 * Length of name="value", including the delimiter written before it.
+	 */
+	static int paramLength(String name, int valueLength) {
+		return 1 + name.length() + 2 + valueLength + 1;
+	}
+
+	/**
+	 * Write delimiter, name and the opening quote of a parameter.
+	 */
+	static void appendParamStart(Appendable out, char delim, String name)
+			throws IOException {
+		out.append(delim).append(name).append('=').append(DQUOTE);
+	}
+
+	static void appendParamEnd(Appendable out) throws IOException {
+		out.append(DQUOTE);
+	}
+
+	/**
+	 * Number of characters of the decimal representation of a long.
+	 */
+	static int longLength(long v) {
+		if (v == Long.MIN_VALUE) {
+			return 20;
+		}
+		int len = 1;
+		if (v < 0) {
+			len++;
+			v = -v;
+		}
+		while (v >= 10) {
+			v /= 10;
+			len++;
+		}
+		return len;
+	}
+
+	/**
+	 * Write the decimal representation of a long, most significant digit
+	 * first.
+	 */
+	static void appendLong(Appendable out, long v) throws IOException {
+		if (v == Long.MIN_VALUE) {
+			out.append(Long.toString(v));
+			return;
+		}
+		if (v < 0) {
+			out.append('-');
+			v = -v;
+		}
+		long divisor = 1;
+		while (v / divisor >= 10) {
+			divisor *= 10;
+		}
+		while (divisor > 0) {
+			out.append((char) ('0' + (v / divisor) % 10));
+			divisor /= 10;
+		}
+	}
+
+	/**
+	 * Length of a quoted-string content with '"' and '\' escaped.
+	 */
+	static int escapedLength(CharSequence s) {
+		int len = s.length();
+		int escaped = len;
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if (c == DQUOTE || c == BACKSLASH) {
+				escaped++;
+			}
+		}
+		return escaped;
+	}
+
+	/**
+	 * Write quoted-string content, escaping '"' and '\' in the same pass.
+	 */
+	static void appendEscaped(Appendable out, CharSequence s)
+			throws IOException {
+		int len = s.length();
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if (c == DQUOTE || c == BACKSLASH) {
+				out.append(BACKSLASH);
+			}
+			out.append(c);
+		}
+	}
+
+	/**
+	 * Check that a value can be written as ISO-8859-1, before anything of the
+	 * header is written to a buffer.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If the value contains a character above 0xFF.
+	 */
+	static void checkLatin1(String name, CharSequence s) {
+		if (s == null) {
+			return;
+		}
+		int len = s.length();
+		for (int i = 0; i < len; i++) {
+			if (s.charAt(i) > 0xFF) {
+				throw new IllegalArgumentException("Character " + s.charAt(i)
+						+ " of " + name + " cannot be written as ISO-8859-1");
+			}
+		}
+	}
+
+	/**
+	 * Create an Appendable that writes to a buffer, after checking that it
+	 * has room for length characters.
+	 *
+	 * @throws BufferOverflowException
+	 *             If the buffer has less than length bytes remaining.
+	 */
+	static Appendable appendable(ByteBuffer buffer, int length) {
+		if (buffer.remaining() < length) {
+			throw new BufferOverflowException();
+		}
+		return new ByteBufferAppendable(buffer);
+	}
+
+	/**
+	 * Writes characters to a buffer as ISO-8859-1.
+	 */
+	private static final class ByteBufferAppendable implements Appendable {
+		private final ByteBuffer buffer;
+
+		private ByteBufferAppendable(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public Appendable append(CharSequence csq) {
+			return append(csq, 0, csq.length());
+		}
+
+		@Override
+		public Appendable append(CharSequence csq, int start, int end) {
+			for (int i = start; i < end; i++) {
+				append(csq.charAt(i));
+			}
+			return this;
+		}
+
+		@Override
+		public Appendable append(char c) {
+			if (c > 0xFF) {
+				throw new IllegalArgumentException("Character " + c
+						+ " cannot be written as ISO-8859-1");
+			}
+			buffer.put((byte) c);
+			return this;
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+package net.jalg.hawkj;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A small, concurrent, size bounded map that evicts the approximately least
+ * recently used entry and counts hits, misses, and evictions.
+ *
+ * Lookups do not take a lock: they read a ConcurrentHashMap and stamp the
+ * entry with the current value of a clock, which only advances when an entry
+ * is added. Entries used since the last addition are therefore all equally
+ * recent, which is precise enough for caches whose entries are expensive to
+ * create. Only adding an entry to a full cache takes a lock, to scan for the
+ * entry with the oldest stamp and remove it.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+final class LruCache<K, V> {
+
+	private final int maximumSize;
+	private final ConcurrentHashMap<K, Entry<V>> map = new ConcurrentHashMap<K, Entry<V>>();
+	private final AtomicLong clock = new AtomicLong();
+	private final Object evictionLock = new Object();
+
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	LruCache(final int maximumSize) {
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("Maximum size must be positive");
+		}
+		this.maximumSize = maximumSize;
+	}
+
+	/**
+	 * Look up a value and count the lookup as hit or miss.
+	 */
+	V get(K key) {
+		Entry<V> entry = map.get(key);
+		if (entry == null) {
+			missCount.increment();
+			return null;
+		}
+		long now = clock.get();
+		if (entry.accessed != now) {
+			// Avoid writing to shared entries more often than necessary
+			entry.accessed = now;
+		}
+		hitCount.increment();
+		return entry.value;
+	}
+
+	/**
+	 * Add a value unless another thread has done so concurrently.
+	 *
+	 * @return The value now in the cache.
+	 */
+	V putIfAbsent(K key, V value) {
+		/*
+		 * The new entry gets a stamp above all earlier ones and the clock is
+		 * moved past it, so that entries used from now on count as more
+		 * recent than the new one.
+		 */
+		Entry<V> entry = new Entry<V>(value, clock.addAndGet(2) - 1);
+		Entry<V> existing = map.putIfAbsent(key, entry);
+		if (existing != null) {
+			return existing.value;
+		}
+		if (map.size() > maximumSize) {
+			evict();
+		}
+		return value;
+	}
+
+	private void evict() {
+		synchronized (evictionLock) {
+			while (map.size() > maximumSize) {
+				K eldest = null;
+				long oldest = Long.MAX_VALUE;
+				for (Map.Entry<K, Entry<V>> e : map.entrySet()) {
+					long accessed = e.getValue().accessed;
+					if (accessed < oldest) {
+						oldest = accessed;
+						eldest = e.getKey();
+					}
+				}
+				if (eldest == null) {
+					return;
+				}
+				if (map.remove(eldest) != null) {
+					evictionCount.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	void clear() {
+		map.clear();
+	}
+
+	int size() {
+		return map.size();
+	}
+
+	int getMaximumSize() {
+		return maximumSize;
+	}
+
+	long getHitCount() {
+		return hitCount.sum();
+	}
+
+	long getMissCount() {
+		return missCount.sum();
+	}
+
+	long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	private static final class Entry<V> {
+		private final V value;
+		private volatile long accessed;
+
+		private Entry(V value, long accessed) {
+			this.value = value;
+			this.accessed = accessed;
+		}
+	}
+
+}
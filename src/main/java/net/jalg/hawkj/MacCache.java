@@ -0,0 +1,322 @@
+package net.jalg.hawkj;
+
+import java.security.InvalidKeyException;
+
+import javax.crypto.Mac;
+
+import net.jalg.hawkj.util.Charsets;
+
+/**
+ * A bounded cache of already keyed {@link Mac} prototypes.
+ *
+ * Creating a Mac involves a JCA provider lookup and running the key schedule
+ * in Mac.init(). Both only depend on the credentials, so this cache keeps one
+ * initialized Mac per (id, key, algorithm) and hands out clones of it. A clone
+ * starts in the freshly keyed state and can be used by the caller without any
+ * further synchronization.
+ * <p>
+ * Prototypes can optionally have absorbed a constant prefix, such as
+ * "hawk.1.header\n". Clones of such a prototype continue from that midstate,
+ * so callers only feed the variable remainder of their input.
+ * <p>
+ * Keyed {@link BuiltinHmac} prototypes are cached the same way, separately
+ * from the Mac prototypes.
+ * <p>
+ * The cache holds at most maximumSize prototypes and evicts the least
+ * recently used one when it is full. Prototypes are never updated after they
+ * have been put into the cache.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public final class MacCache {
+
+	public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+	private static final MacCache DEFAULT = new MacCache(DEFAULT_MAXIMUM_SIZE);
+
+	private static final String NO_PREFIX = "";
+
+	private final LruCache<CacheKey, Mac> prototypes;
+	private final LruCache<CacheKey, BuiltinHmac> builtinPrototypes;
+
+	/**
+	 * Create a cache holding at most maximumSize Mac prototypes.
+	 *
+	 * @param maximumSize
+	 *            Maximum number of cached prototypes, must be positive.
+	 */
+	public MacCache(final int maximumSize) {
+		this.prototypes = new LruCache<CacheKey, Mac>(maximumSize);
+		this.builtinPrototypes = new LruCache<CacheKey, BuiltinHmac>(
+				maximumSize);
+	}
+
+	/**
+	 * Get the cache used by HawkContext and HawkWwwAuthenticateContext.
+	 *
+	 * @return The default cache.
+	 */
+	public static MacCache getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Obtain a Mac that is initialized with the given credentials.
+	 *
+	 * The returned instance is owned by the caller.
+	 *
+	 * @param id
+	 *            The credentials id
+	 * @param key
+	 *            The credentials key
+	 * @param algorithm
+	 *            The credentials algorithm
+	 * @return A keyed Mac, ready for use.
+	 * @throws HawkException
+	 *             If the algorithm is not available or the key is invalid.
+	 */
+	public Mac getMac(String id, String key, Algorithm algorithm)
+			throws HawkException {
+		return getMac(id, HawkKey.of(key), algorithm, NO_PREFIX);
+	}
+
+	/**
+	 * Obtain a Mac that is initialized with the given credentials.
+	 *
+	 * The returned instance is owned by the caller.
+	 *
+	 * @param id
+	 *            The credentials id
+	 * @param key
+	 *            The pre-encoded credentials key
+	 * @param algorithm
+	 *            The credentials algorithm
+	 * @return A keyed Mac, ready for use.
+	 * @throws HawkException
+	 *             If the algorithm is not available or the key is invalid.
+	 */
+	public Mac getMac(String id, HawkKey key, Algorithm algorithm)
+			throws HawkException {
+		return getMac(id, key, algorithm, NO_PREFIX);
+	}
+
+	/**
+	 * Obtain a Mac that is initialized with the given credentials and has
+	 * already absorbed the UTF-8 encoding of prefix.
+	 *
+	 * The returned instance is owned by the caller. Note that Mac.doFinal()
+	 * resets the Mac to the keyed state <em>without</em> the prefix.
+	 *
+	 * @param id
+	 *            The credentials id
+	 * @param key
+	 *            The credentials key
+	 * @param algorithm
+	 *            The credentials algorithm
+	 * @param prefix
+	 *            Constant input prefix, usually one of a few constants.
+	 * @return A keyed Mac, ready for use.
+	 * @throws HawkException
+	 *             If the algorithm is not available or the key is invalid.
+	 */
+	public Mac getMac(String id, String key, Algorithm algorithm, String prefix)
+			throws HawkException {
+		return getMac(id, HawkKey.of(key), algorithm, prefix);
+	}
+
+	/**
+	 * Obtain a Mac that is initialized with the given credentials and has
+	 * already absorbed the UTF-8 encoding of prefix.
+	 *
+	 * @see #getMac(String, String, Algorithm, String)
+	 *
+	 * @param id
+	 *            The credentials id
+	 * @param key
+	 *            The pre-encoded credentials key
+	 * @param algorithm
+	 *            The credentials algorithm
+	 * @param prefix
+	 *            Constant input prefix, usually one of a few constants.
+	 * @return A keyed Mac, ready for use.
+	 * @throws HawkException
+	 *             If the algorithm is not available or the key is invalid.
+	 */
+	public Mac getMac(String id, HawkKey key, Algorithm algorithm, String prefix)
+			throws HawkException {
+		CacheKey cacheKey = new CacheKey(id, key, algorithm, prefix);
+		Mac prototype = prototypes.get(cacheKey);
+		if (prototype == null) {
+			prototype = prototypes.putIfAbsent(cacheKey,
+					createMac(key, algorithm, prefix));
+		}
+		return copy(prototype, key, algorithm, prefix);
+	}
+
+	/**
+	 * Obtain the keyed {@link BuiltinHmac} prototype for the given
+	 * credentials.
+	 *
+	 * The returned instance is shared. It must only be used as the argument
+	 * of {@link BuiltinHmac#init(BuiltinHmac)} and never be updated.
+	 *
+	 * @param id
+	 *            The credentials id
+	 * @param key
+	 *            The pre-encoded credentials key
+	 * @param algorithm
+	 *            The credentials algorithm, SHA_1 or SHA_256
+	 * @return The keyed prototype.
+	 */
+	BuiltinHmac getBuiltinHmac(String id, HawkKey key, Algorithm algorithm) {
+		return getBuiltinHmac(id, key, algorithm, NO_PREFIX);
+	}
+
+	/**
+	 * Obtain the keyed {@link BuiltinHmac} prototype for the given
+	 * credentials that has already absorbed the UTF-8 encoding of prefix.
+	 *
+	 * The returned instance is shared. It must only be used as the argument
+	 * of {@link BuiltinHmac#copyState(BuiltinHmac)} and never be updated.
+	 *
+	 * @param id
+	 *            The credentials id
+	 * @param key
+	 *            The pre-encoded credentials key
+	 * @param algorithm
+	 *            The credentials algorithm, SHA_1 or SHA_256
+	 * @param prefix
+	 *            Constant input prefix, usually one of a few constants.
+	 * @return The keyed prototype.
+	 */
+	BuiltinHmac getBuiltinHmac(String id, HawkKey key, Algorithm algorithm,
+			String prefix) {
+		CacheKey cacheKey = new CacheKey(id, key, algorithm, prefix);
+		BuiltinHmac prototype = builtinPrototypes.get(cacheKey);
+		if (prototype == null) {
+			prototype = BuiltinHmac.getInstance(algorithm);
+			byte[] k = key.bytes();
+			prototype.init(k, 0, k.length);
+			if (prefix.length() > 0) {
+				prototype.update(prefix.getBytes(Charsets.UTF_8));
+			}
+			prototype = builtinPrototypes.putIfAbsent(cacheKey, prototype);
+		}
+		return prototype;
+	}
+
+	/**
+	 * Remove all cached prototypes. Statistics are not reset.
+	 */
+	public void clear() {
+		prototypes.clear();
+		builtinPrototypes.clear();
+	}
+
+	/**
+	 * @return Number of cached JCA and built-in prototypes.
+	 */
+	public int size() {
+		return prototypes.size() + builtinPrototypes.size();
+	}
+
+	/**
+	 * @return Maximum size for JCA and for built-in prototypes, each.
+	 */
+	public int getMaximumSize() {
+		return prototypes.getMaximumSize();
+	}
+
+	public long getHitCount() {
+		return prototypes.getHitCount() + builtinPrototypes.getHitCount();
+	}
+
+	public long getMissCount() {
+		return prototypes.getMissCount() + builtinPrototypes.getMissCount();
+	}
+
+	public long getEvictionCount() {
+		return prototypes.getEvictionCount()
+				+ builtinPrototypes.getEvictionCount();
+	}
+
+	@Override
+	public String toString() {
+		return "MacCache [size=" + size() + ", maximumSize="
+				+ getMaximumSize() + ", hits=" + getHitCount() + ", misses="
+				+ getMissCount() + ", evictions=" + getEvictionCount() + "]";
+	}
+
+	/**
+	 * Clone a prototype. If the provider does not support cloning, an engine
+	 * from the default {@link EnginePool} is keyed instead.
+	 */
+	private static Mac copy(Mac prototype, HawkKey key, Algorithm algorithm,
+			String prefix) throws HawkException {
+		try {
+			return (Mac) prototype.clone();
+		} catch (CloneNotSupportedException e) {
+			return createMac(key, algorithm, prefix);
+		}
+	}
+
+	/**
+	 * Create a keyed Mac, owned by the cache or the caller.
+	 */
+	private static Mac createMac(HawkKey key, Algorithm algorithm,
+			String prefix) throws HawkException {
+		Mac mac = EnginePool.newMac(algorithm);
+
+		try {
+			mac.init(key.getSecretKey(algorithm));
+		} catch (InvalidKeyException e) {
+			throw new HawkException("Key is invalid ", e);
+		}
+		if (prefix.length() > 0) {
+			mac.update(prefix.getBytes(Charsets.UTF_8));
+		}
+		return mac;
+	}
+
+	/**
+	 * Identity of a cache entry. The key is part of the identity so that
+	 * rotating the key of an id never yields a stale Mac.
+	 */
+	private static final class CacheKey {
+		private final String id;
+		private final HawkKey key;
+		private final Algorithm algorithm;
+		private final String prefix;
+		private final int hashCode;
+
+		private CacheKey(String id, HawkKey key, Algorithm algorithm,
+				String prefix) {
+			this.id = id;
+			this.key = key;
+			this.algorithm = algorithm;
+			this.prefix = prefix;
+			this.hashCode = 31 * (31 * (31 * id.hashCode() + key.hashCode())
+					+ algorithm.hashCode()) + prefix.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey other = (CacheKey) obj;
+			return algorithm == other.algorithm && id.equals(other.id)
+					&& key.equals(other.key) && prefix.equals(other.prefix);
+		}
+	}
+
+}
@@ -0,0 +1,22 @@
+package net.jalg.hawkj;
+
+/**
+ * The implementation used by a {@link HawkContext} to compute HMACs.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public enum MacImplementation {
+
+	/**
+	 * javax.crypto.Mac as provided by the installed JCA providers. This is
+	 * the default and supports all algorithms.
+	 */
+	JCA,
+
+	/**
+	 * The pure Java {@link BuiltinHmac}. Supports SHA_1 and SHA_256 only.
+	 */
+	BUILTIN;
+
+}
@@ -0,0 +1,144 @@
+package net.jalg.hawkj;
+
+import java.security.MessageDigest;
+
+/**
+ * A bounded cache of {@link MessageDigest} prototypes for payload hashes.
+ *
+ * Every payload hash starts with the same "hawk.1.payload\n&lt;content-type&gt;\n"
+ * bytes for a given content type. This cache keeps one digest per (algorithm,
+ * content type) that has absorbed this prefix and hands out clones of it, so
+ * that each hash computation only feeds the payload itself.
+ * <p>
+ * Content types are chosen by clients. Only well-formed media types of
+ * limited length are cached, and once the cache is full, digests for further
+ * content types are created without being cached instead of evicting
+ * others. Clients sending a new content type with every request thus cannot
+ * displace the few content types an application actually uses.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+final class PayloadDigestCache {
+
+	static final int MAX_CACHED_LENGTH = 64;
+
+	private final String header;
+	private final LruCache<CacheKey, MessageDigest> prototypes;
+
+	/**
+	 * @param header
+	 *            First line of the payload hash input, without line feed.
+	 * @param maximumSize
+	 *            Maximum number of cached prototypes.
+	 */
+	PayloadDigestCache(String header, int maximumSize) {
+		this.header = header;
+		this.prototypes = new LruCache<CacheKey, MessageDigest>(maximumSize);
+	}
+
+	/**
+	 * Obtain a digest that has absorbed the payload hash prefix for the
+	 * content type. The returned instance is owned by the caller.
+	 *
+	 * @param algorithm
+	 * @param contentType
+	 *            Content type, already stripped of parameters.
+	 * @return The digest
+	 * @throws HawkException
+	 */
+	MessageDigest getDigest(Algorithm algorithm, String contentType)
+			throws HawkException {
+		if (!isCacheable(contentType)) {
+			return createDigest(algorithm, contentType);
+		}
+		CacheKey cacheKey = new CacheKey(algorithm, contentType);
+		MessageDigest prototype = prototypes.get(cacheKey);
+		if (prototype == null) {
+			MessageDigest md = createDigest(algorithm, contentType);
+			if (prototypes.size() >= prototypes.getMaximumSize()) {
+				return md;
+			}
+			prototype = prototypes.putIfAbsent(cacheKey, md);
+		}
+		try {
+			return (MessageDigest) prototype.clone();
+		} catch (CloneNotSupportedException e) {
+			return createDigest(algorithm, contentType);
+		}
+	}
+
+	int size() {
+		return prototypes.size();
+	}
+
+	/**
+	 * Check for type "/" subtype, both made of the characters allowed by RFC
+	 * 6838.
+	 */
+	static boolean isCacheable(String contentType) {
+		int len = contentType.length();
+		if (len == 0 || len > MAX_CACHED_LENGTH) {
+			return false;
+		}
+		int slash = -1;
+		for (int i = 0; i < len; i++) {
+			char c = contentType.charAt(i);
+			if (c == '/') {
+				if (slash >= 0) {
+					return false;
+				}
+				slash = i;
+			} else if (!isRestrictedNameChar(c)) {
+				return false;
+			}
+		}
+		return slash > 0 && slash < len - 1;
+	}
+
+	private static boolean isRestrictedNameChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+				|| (c >= '0' && c <= '9') || "!#$&-^_.+".indexOf(c) >= 0;
+	}
+
+	/**
+	 * Create a digest with the prefix absorbed, owned by the cache or the
+	 * caller.
+	 */
+	private MessageDigest createDigest(Algorithm algorithm, String contentType)
+			throws HawkException {
+		MessageDigest md = EnginePool.newDigest(algorithm);
+		BaseStringWriter.acquire().append(header).lf().append(contentType)
+				.lf().update(md);
+		return md;
+	}
+
+	private static final class CacheKey {
+		private final Algorithm algorithm;
+		private final String contentType;
+
+		private CacheKey(Algorithm algorithm, String contentType) {
+			this.algorithm = algorithm;
+			this.contentType = contentType;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * algorithm.hashCode() + contentType.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey other = (CacheKey) obj;
+			return algorithm == other.algorithm
+					&& contentType.equals(other.contentType);
+		}
+	}
+
+}
@@ -0,0 +1,97 @@
+package net.jalg.hawkj;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link EnginePool} that shares a bounded number of idle engines per
+ * {@link Algorithm} between all threads.
+ *
+ * This pool does not use thread locals and is therefore suitable for
+ * applications that run requests on virtual threads: memory use is bounded by
+ * the number of concurrently used engines plus maxIdle per algorithm, not by
+ * the number of threads.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public class SharedEnginePool extends EnginePool {
+
+	public static final int DEFAULT_MAX_IDLE = 64;
+
+	private final int maxIdle;
+
+	private final Idle<BuiltinHmac>[] builtinHmacs;
+
+	public SharedEnginePool() {
+		this(DEFAULT_MAX_IDLE);
+	}
+
+	/**
+	 * Create a pool that keeps at most maxIdle engines per algorithm.
+	 *
+	 * @param maxIdle
+	 */
+	public SharedEnginePool(int maxIdle) {
+		if (maxIdle <= 0) {
+			throw new IllegalArgumentException("maxIdle must be positive");
+		}
+		this.maxIdle = maxIdle;
+		int n = Algorithm.values().length;
+		this.builtinHmacs = SharedEnginePool.<BuiltinHmac> idle(n);
+	}
+
+	/**
+	 * Create an array of n empty queues. Generic arrays cannot be created
+	 * directly, the unchecked conversion of the raw array is safe because it
+	 * only ever holds Idle&lt;T&gt;.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <T> Idle<T>[] idle(int n) {
+		Idle<T>[] idle = new Idle[n];
+		for (int i = 0; i < n; i++) {
+			idle[i] = new Idle<T>();
+		}
+		return idle;
+	}
+
+	@Override
+	public BuiltinHmac acquireBuiltinHmac(Algorithm algorithm) {
+		BuiltinHmac hmac = builtinHmacs[algorithm.ordinal()].poll();
+		return hmac != null ? hmac : BuiltinHmac.getInstance(algorithm);
+	}
+
+	@Override
+	public void releaseBuiltinHmac(Algorithm algorithm, BuiltinHmac hmac) {
+		builtinHmacs[algorithm.ordinal()].offer(hmac, maxIdle);
+	}
+
+	public int getMaxIdle() {
+		return maxIdle;
+	}
+
+	/**
+	 * Bounded queue of idle engines.
+	 */
+	private static final class Idle<T> {
+		private final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<T>();
+		private final AtomicInteger size = new AtomicInteger();
+
+		private T poll() {
+			T t = queue.poll();
+			if (t != null) {
+				size.decrementAndGet();
+			}
+			return t;
+		}
+
+		private void offer(T t, int max) {
+			if (size.incrementAndGet() > max) {
+				size.decrementAndGet();
+				return;
+			}
+			queue.offer(t);
+		}
+	}
+
+}
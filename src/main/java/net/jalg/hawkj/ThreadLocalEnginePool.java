@@ -0,0 +1,41 @@
+package net.jalg.hawkj;
+
+/**
+ * An {@link EnginePool} that keeps one {@link BuiltinHmac} per
+ * {@link Algorithm} and thread.
+ *
+ * Engines are confined to the thread that acquired them. If an engine of an
+ * algorithm is acquired again before it has been released, a new engine is
+ * created for the nested use.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public class ThreadLocalEnginePool extends EnginePool {
+
+	private static final int ALGORITHMS = Algorithm.values().length;
+
+	private final ThreadLocal<BuiltinHmac[]> builtinHmacs = new ThreadLocal<BuiltinHmac[]>() {
+		@Override
+		protected BuiltinHmac[] initialValue() {
+			return new BuiltinHmac[ALGORITHMS];
+		}
+	};
+
+	@Override
+	public BuiltinHmac acquireBuiltinHmac(Algorithm algorithm) {
+		BuiltinHmac[] slots = builtinHmacs.get();
+		BuiltinHmac hmac = slots[algorithm.ordinal()];
+		if (hmac == null) {
+			return BuiltinHmac.getInstance(algorithm);
+		}
+		slots[algorithm.ordinal()] = null;
+		return hmac;
+	}
+
+	@Override
+	public void releaseBuiltinHmac(Algorithm algorithm, BuiltinHmac hmac) {
+		builtinHmacs.get()[algorithm.ordinal()] = hmac;
+	}
+
+}
@@ -1,10 +1,19 @@
 package net.jalg.hawkj;
 
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
 import java.util.Random;
 
 
 public class Util {
+
+	private static final char[] BASE64_ALPHABET = {
+			'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M',
+			'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z',
+			'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm',
+			'n', 'o', 'p', 'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z',
+			'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '+', '/' };
+	private static final char BASE64_PAD = '=';
 	
 	/**
 	 * Convert a byte array to a string using. This method turns a byte array
@@ -88,4 +97,150 @@ public class Util {
 		return equal;
 	}
 
+	/** Fixed time comparison of bytes with their Base64 encoding.
+	 * 
+	 * Compares the standard, padded Base64 encoding of the first len bytes of
+	 * a byte array with an encoded string. The encoding is computed character
+	 * by character during the comparison, so no encoded string is created.
+	 * Apart from the length check, the time taken does not depend on where the
+	 * operands differ.
+	 * 
+	 * @param bytes Raw bytes, e.g. a computed HMAC
+	 * @param len Number of bytes to use
+	 * @param encoded Base64 encoded value, e.g. a received HMAC
+	 * @return true if encoded is the Base64 encoding of the bytes, false otherwise.
+	 */
+	public static boolean fixedTimeEqualBase64(byte[] bytes, int len, String encoded) {
+		return fixedTimeEqualBase64(bytes, len, (CharSequence) encoded);
+	}
+
+	/** Fixed time comparison of bytes with their Base64 encoding.
+	 * 
+	 * @see #fixedTimeEqualBase64(byte[], int, String)
+	 * 
+	 * @param bytes Raw bytes, e.g. a computed HMAC
+	 * @param len Number of bytes to use
+	 * @param encoded Base64 encoded value, e.g. a received HMAC
+	 * @return true if encoded is the Base64 encoding of the bytes, false otherwise.
+	 */
+	public static boolean fixedTimeEqualBase64(byte[] bytes, int len, CharSequence encoded) {
+		
+		if (encoded.length() != ((len + 2) / 3) * 4) {
+			return false;
+		}
+		int diff = 0;
+		int j = 0;
+		for (int i = 0; i < len; i += 3) {
+			int b0 = bytes[i] & 0xFF;
+			int b1 = (i + 1 < len) ? bytes[i + 1] & 0xFF : 0;
+			int b2 = (i + 2 < len) ? bytes[i + 2] & 0xFF : 0;
+			diff |= encoded.charAt(j++) ^ BASE64_ALPHABET[b0 >>> 2];
+			diff |= encoded.charAt(j++) ^ BASE64_ALPHABET[((b0 & 0x03) << 4) | (b1 >>> 4)];
+			diff |= encoded.charAt(j++) ^ ((i + 1 < len) ? BASE64_ALPHABET[((b1 & 0x0F) << 2) | (b2 >>> 6)] : BASE64_PAD);
+			diff |= encoded.charAt(j++) ^ ((i + 2 < len) ? BASE64_ALPHABET[b2 & 0x3F] : BASE64_PAD);
+		}
+		
+		return diff == 0;
+	}
+
+	/** Fixed time comparison of bytes with their Base64 encoding held as
+	 * ASCII bytes in a buffer.
+	 * 
+	 * @see #fixedTimeEqualBase64(byte[], int, String)
+	 * 
+	 * @param bytes Raw bytes, e.g. a computed HMAC
+	 * @param len Number of bytes to use
+	 * @param encoded Base64 encoded value between position and limit. The
+	 *        position is not changed.
+	 * @return true if encoded is the Base64 encoding of the bytes, false otherwise.
+	 */
+	public static boolean fixedTimeEqualBase64(byte[] bytes, int len, ByteBuffer encoded) {
+		
+		if (encoded.remaining() != ((len + 2) / 3) * 4) {
+			return false;
+		}
+		int diff = 0;
+		int j = encoded.position();
+		for (int i = 0; i < len; i += 3) {
+			int b0 = bytes[i] & 0xFF;
+			int b1 = (i + 1 < len) ? bytes[i + 1] & 0xFF : 0;
+			int b2 = (i + 2 < len) ? bytes[i + 2] & 0xFF : 0;
+			diff |= encoded.get(j++) ^ BASE64_ALPHABET[b0 >>> 2];
+			diff |= encoded.get(j++) ^ BASE64_ALPHABET[((b0 & 0x03) << 4) | (b1 >>> 4)];
+			diff |= encoded.get(j++) ^ ((i + 1 < len) ? BASE64_ALPHABET[((b1 & 0x0F) << 2) | (b2 >>> 6)] : BASE64_PAD);
+			diff |= encoded.get(j++) ^ ((i + 2 < len) ? BASE64_ALPHABET[b2 & 0x3F] : BASE64_PAD);
+		}
+		
+		return diff == 0;
+	}
+
+	/**
+	 * Parse a non-negative decimal number from a range of characters without
+	 * creating a String or throwing an exception.
+	 *
+	 * Only the digits 0-9 are accepted, there is no sign. Values that do not
+	 * fit into a long are detected before they overflow.
+	 *
+	 * @param s
+	 * @param start
+	 *            Start of the number, inclusive.
+	 * @param end
+	 *            End of the number, exclusive.
+	 * @return The value or -1, if the range is empty, contains other
+	 *         characters than digits or the value is too large.
+	 */
+	public static long parseNonNegativeLong(CharSequence s, int start, int end) {
+		if (start >= end) {
+			return -1;
+		}
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			int digit = s.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			if (value > (Long.MAX_VALUE - digit) / 10) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	/**
+	 * Case insensitive comparison of a range with a lower case ASCII name.
+	 */
+	static boolean regionMatchesIgnoreCase(CharSequence s, int start,
+			int end, String name) {
+		int len = name.length();
+		if (end - start != len) {
+			return false;
+		}
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(start + i);
+			if (c >= 'A' && c <= 'Z') {
+				c += 'a' - 'A';
+			}
+			if (c != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static final int MAX_EXCERPT_LENGTH = 32;
+
+	/**
+	 * Copy at most the first 32 characters of a range for use in an error
+	 * message, so that the cost of reporting an error does not grow with the
+	 * size of a hostile header.
+	 */
+	static String excerpt(CharSequence s, int start, int end) {
+		if (end - start <= MAX_EXCERPT_LENGTH) {
+			return s.subSequence(start, end).toString();
+		}
+		return s.subSequence(start, start + MAX_EXCERPT_LENGTH).toString()
+				+ "...";
+	}
+
 }
@@ -1,5 +1,8 @@
 package net.jalg.hawkj;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 /**
  * Builder implementation for WWW-Authenticate headers.
  * 
@@ -10,7 +13,6 @@ public class WwwAuthenticateHeader {
 
 	private static final char BLANK = ' '; 
 	private static final char COMMA = ','; 
-	private static final String ESCDQUOTE = "\""; 
 	
 //	private String realm;
 	private HawkError error;
@@ -37,28 +39,88 @@ public class WwwAuthenticateHeader {
 		return ts != 0;
 	}
 
-	public String toString() {
-		//FIXME  beware " escaping
-		StringBuilder sb = new StringBuilder(HawkContext.SCHEME);
+	public HawkError getError() {
+		return error;
+	}
+
+	/**
+	 * Get the exact number of characters written by
+	 * {@link #writeTo(Appendable)}.
+	 *
+	 * @return The length of the header value
+	 */
+	public int length() {
+		int len = HawkContext.SCHEME.length();
+		if (ts != 0) {
+			len += HeaderWriter.paramLength("ts", HeaderWriter.longLength(ts));
+		}
+		if (tsm != null) {
+			len += HeaderWriter.paramLength("tsm", tsm.length());
+		}
+		if (error != null) {
+			len += HeaderWriter.paramLength("error", error.getCode().length());
+		}
+		return len;
+	}
+
+	/**
+	 * Write the header value without creating temporary strings.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeTo(Appendable out) throws IOException {
+		out.append(HawkContext.SCHEME);
 		char delim = BLANK;
 		// FIXME: integrate realm
-//		if (realm != null) {
-//			sb.append(delim).append("realm=\"").append(realm).append(ESCDQUOTE);
-//			delim = COMMA;
-//		}
 		if (ts != 0) {
-			sb.append(delim).append("ts=\"").append(ts).append(ESCDQUOTE);
+			HeaderWriter.appendParamStart(out, delim, "ts");
+			HeaderWriter.appendLong(out, ts);
+			HeaderWriter.appendParamEnd(out);
 			delim = COMMA;
 		}
 		if (tsm != null) {
-			sb.append(delim).append("tsm=\"").append(tsm).append(ESCDQUOTE);
+			HeaderWriter.appendParamStart(out, delim, "tsm");
+			out.append(tsm);
+			HeaderWriter.appendParamEnd(out);
 			delim = COMMA;
 		}
 		if (error != null) {
-			sb.append(delim).append("error=\"").append(error.getCode()).append(ESCDQUOTE);
+			HeaderWriter.appendParamStart(out, delim, "error");
+			out.append(error.getCode());
+			HeaderWriter.appendParamEnd(out);
 			delim = COMMA;
 		}
 		// FIXME: extension elements?
+	}
+
+	/**
+	 * Write the header value as ISO-8859-1 bytes at the position of a buffer.
+	 *
+	 * @param out
+	 * @throws java.nio.BufferOverflowException
+	 *             If the buffer has less than {@link #length()} bytes
+	 *             remaining. Nothing is written in that case.
+	 * @throws IllegalArgumentException
+	 *             If a value contains characters that cannot be written as
+	 *             ISO-8859-1. Nothing is written in that case.
+	 */
+	public void writeTo(ByteBuffer out) {
+		HeaderWriter.checkLatin1("tsm", tsm);
+		try {
+			writeTo(HeaderWriter.appendable(out, length()));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder(length());
+		try {
+			writeTo(sb);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
 		return sb.toString();
 	}
 
@@ -68,12 +130,100 @@ public class WwwAuthenticateHeader {
 		return new WwwAuthenticateBuilder();
 	}
 
+	/**
+	 * Parse a WWW-Authenticate header value.
+	 *
+	 * The value is checked against the default {@link AuthHeaderLimits}:
+	 * values longer than 8192 characters, with more than 32 parameters or
+	 * with parameter values beyond the per-parameter maximum lengths are
+	 * rejected. Earlier versions accepted values of any size.
+	 *
+	 * Use {@link WwwAuthenticateBuilder#limits(AuthHeaderLimits)} to parse with
+	 * other limits, or {@link AuthHeaderLimits#setDefault(AuthHeaderLimits)}
+	 * to change the limits for all parsers.
+	 *
+	 * @param value
+	 *            The header value.
+	 * @return The header.
+	 * @throws AuthHeaderParsingException
+	 *             If the value is malformed or exceeds a limit.
+	 */
 	public static WwwAuthenticateHeader wwwAuthenticate(String value)
 			throws AuthHeaderParsingException {
-		WwwAuthenticateBuilder b = new WwwAuthenticateBuilder();
-		AuthDirectiveParser p = new AuthDirectiveParser(value, b);
-		p.parse();
-		return b.build();
+		return new WwwAuthenticateBuilder().parse(value).build();
+	}
+
+	/**
+	 * Find and parse the Hawk challenge in a WWW-Authenticate header value
+	 * that may contain several challenges, skipping the challenges of other
+	 * schemes.
+	 *
+	 * The length of the value is checked against the maximum header length
+	 * of the default {@link AuthHeaderLimits} before it is scanned.
+	 *
+	 * @see WwwAuthenticateHeaderView#parseHawkChallenge(CharSequence)
+	 *
+	 * @param value
+	 *            The header value.
+	 * @return The header or null, if the value contains no Hawk challenge.
+	 * @throws AuthHeaderParsingException
+	 */
+	public static WwwAuthenticateHeader hawkChallenge(String value)
+			throws AuthHeaderParsingException {
+		if (value == null) {
+			throw new IllegalArgumentException("Unable to parse a null header value");
+		}
+		AuthHeaderLimits limits = AuthHeaderLimits.getDefault();
+		if (value.length() > limits.getMaxHeaderLength()) {
+			limits.reject(AuthHeaderLimits.Violation.HEADER_LENGTH);
+			throw AuthHeaderParsingException.create(false, "Header value of length "
+					+ value.length() + " exceeds the maximum length "
+					+ limits.getMaxHeaderLength(), null);
+		}
+		long range = AuthDirectiveParser.findChallenge(value, "hawk", false);
+		if (range < 0) {
+			return null;
+		}
+		return new WwwAuthenticateBuilder().limits(limits).parse(
+				new CharRange(value, (int) (range >>> 32), (int) range)).build();
+	}
+
+	/**
+	 * Find and parse the first Hawk challenge in the values of several
+	 * WWW-Authenticate headers.
+	 *
+	 * @see #hawkChallenge(String)
+	 *
+	 * @param values
+	 *            The header values, in the order received.
+	 * @return The header or null, if no value contains a Hawk challenge.
+	 * @throws AuthHeaderParsingException
+	 */
+	public static WwwAuthenticateHeader hawkChallenge(Iterable<String> values)
+			throws AuthHeaderParsingException {
+		for (String value : values) {
+			WwwAuthenticateHeader header = hawkChallenge(value);
+			if (header != null) {
+				return header;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Parse a header value without throwing an exception if it is malformed.
+	 *
+	 * @param value
+	 *            The header value.
+	 * @return The result, holding the header or the status
+	 *         {@link HawkStatus#INVALID_HEADER}.
+	 */
+	public static HawkResult<WwwAuthenticateHeader> tryWwwAuthenticate(String value) {
+		HawkResult<WwwAuthenticateBuilder> result = new WwwAuthenticateBuilder().tryParse(value);
+		if (!result.isOk()) {
+			return HawkResult.failure(result.getStatus(), result.getMessage());
+		}
+		return HawkResult.ok(result.getValue().build());
 	}
 
 	public static class WwwAuthenticateBuilder implements AuthDirectiveBuilder {
@@ -82,10 +232,136 @@ public class WwwAuthenticateHeader {
 		private long ts;
 		private String tsm;
 
+		private AuthDirectiveParser parser;
+		private AsciiSequence bytes;
+		private boolean stackless;
+		private AuthHeaderLimits limits;
+
 		private WwwAuthenticateBuilder() {
 
 		}
 
+		/**
+		 * Clear all values so that the builder can be reused.
+		 *
+		 * @return This builder
+		 */
+		public WwwAuthenticateBuilder reset() {
+			error = null;
+			ts = 0;
+			tsm = null;
+			return this;
+		}
+
+		/**
+		 * Set the limits for parsing header values with this builder,
+		 * instead of the default limits.
+		 *
+		 * @param limits
+		 * @return This builder
+		 */
+		public WwwAuthenticateBuilder limits(AuthHeaderLimits limits) {
+			if (limits == null) {
+				throw new IllegalArgumentException("Null limits not allowed");
+			}
+			this.limits = limits;
+			return this;
+		}
+
+		/**
+		 * Reset the builder and parse a header value into it. The parser is
+		 * kept for reuse, so a builder that is reused per thread or
+		 * connection only allocates the parsed values.
+		 *
+		 * @param value
+		 *            The header value.
+		 * @return This builder
+		 * @throws AuthHeaderParsingException
+		 */
+		public WwwAuthenticateBuilder parse(CharSequence value)
+				throws AuthHeaderParsingException {
+			reset();
+			if (parser == null) {
+				parser = new AuthDirectiveParser(value, new Ranges());
+			} else {
+				parser.reset(value);
+			}
+			if (limits != null) {
+				parser.setLimits(limits);
+			}
+			parser.setStackless(stackless);
+			parser.parse();
+			return this;
+		}
+
+		/**
+		 * Reset the builder and parse a header value from its raw bytes into
+		 * it, without decoding them first. Bytes are interpreted as
+		 * ISO-8859-1.
+		 *
+		 * @param bytes
+		 * @param offset
+		 *            Start of the header value in bytes.
+		 * @param length
+		 *            Length of the header value.
+		 * @return This builder
+		 * @throws AuthHeaderParsingException
+		 */
+		public WwwAuthenticateBuilder parse(byte[] bytes, int offset,
+				int length) throws AuthHeaderParsingException {
+			return parse(bytes().reset(bytes, offset, length));
+		}
+
+		/**
+		 * Reset the builder and parse a header value from the raw bytes
+		 * between position and limit of a heap or direct buffer into it. The
+		 * position of the buffer is not changed.
+		 *
+		 * @see #parse(byte[], int, int)
+		 *
+		 * @param buffer
+		 * @return This builder
+		 * @throws AuthHeaderParsingException
+		 */
+		public WwwAuthenticateBuilder parse(ByteBuffer buffer)
+				throws AuthHeaderParsingException {
+			return parse(bytes().reset(buffer));
+		}
+
+		private AsciiSequence bytes() {
+			if (bytes == null) {
+				bytes = new AsciiSequence();
+			}
+			return bytes;
+		}
+
+		/**
+		 * Like {@link #parse(CharSequence)}, but reports a malformed header
+		 * value by status instead of throwing an exception.
+		 *
+		 * @param value
+		 *            The header value.
+		 * @return The result, holding this builder or the status
+		 *         {@link HawkStatus#INVALID_HEADER}.
+		 */
+		public HawkResult<WwwAuthenticateBuilder> tryParse(CharSequence value) {
+			if (value == null) {
+				return HawkResult.failure(HawkStatus.INVALID_HEADER,
+						"Unable to parse a null header value");
+			}
+			stackless = true;
+			try {
+				parse(value);
+				return HawkResult.ok(this);
+			} catch (AuthHeaderParsingException e) {
+				return HawkResult.failure(HawkStatus.INVALID_HEADER,
+						e.getMessage());
+			} finally {
+				stackless = false;
+				parser.setStackless(false);
+			}
+		}
+
 		public WwwAuthenticateHeader build() {
 			WwwAuthenticateHeader instance = new WwwAuthenticateHeader();
 //			instance.realm = this.realm;
@@ -117,43 +393,104 @@ public class WwwAuthenticateHeader {
 		@Override
 		public void scheme(String scheme) throws AuthHeaderParsingException {
 			if (!HawkContext.SCHEME.equalsIgnoreCase(scheme)) {
-				throw new AuthHeaderParsingException("Wrong auth scheme name "
-						+ scheme);
+				throw parsingException("Wrong auth scheme name "
+						+ Util.excerpt(scheme, 0, scheme.length()), null);
 			}
 		}
 
 		@Override
 		public void param(String key, String value)
 				throws AuthHeaderParsingException {
-			// check null
-			key = key.toLowerCase();
+			if (value == null) {
+				throw parsingException("value is null for key: "
+						+ key, null);
+			}
+			if (key == null) {
+				throw parsingException("Received null-key", null);
+			}
 //			if (key.equals("realm")) {
 //				realm(value);
-			if (key.equals("ts")) {
-				try {
-					ts(Long.parseLong(value));
-				} catch(NumberFormatException e) {
-					throw new AuthHeaderParsingException(value + " is not an integer value",e);
+			HawkDirective directive = HawkDirective.match(key);
+			if (directive == null) {
+				// FIXME: must-ignore key. Or parse extension?
+				return;
+			}
+			value(directive, value, 0, value.length(), false);
+		}
+
+		/**
+		 * Set the value of a directive from a range of characters. Numeric
+		 * values are parsed from the range without creating a String.
+		 */
+		private void value(HawkDirective directive, CharSequence s, int start,
+				int end, boolean escaped) throws AuthHeaderParsingException {
+			switch (directive) {
+			case TS:
+				long value = Util.parseNonNegativeLong(s, start, end);
+				if (value < 0) {
+					throw parsingException(Util.excerpt(s, start, end) + " is not a valid timestamp", null);
 				}
-			} else if (key.equals("tsm")) {
-				tsm(value);
-			} else if (key.equals("error")) {
-				HawkError e = HawkError.fromString(value);
+				ts(value);
+				break;
+			case TSM:
+				tsm(escaped ? AuthDirectiveParser.unescape(s, start, end)
+						: s.subSequence(start, end).toString());
+				break;
+			case ERROR:
+				HawkError e = HawkError.fromCode(s, start, end);
 				if(e == null) {
-					throw new AuthHeaderParsingException(value + "is not a recognized Hawk error");
+					throw parsingException(Util.excerpt(s, start, end) + " is not a recognized Hawk error", null);
 				}
 				error(e); 
-			} else {
-				// FIXME: must-ignore key. Or parse extension?
+				break;
+			default:
+				// Ignore parameters of other headers
 			}
-
 		}
 
 		@Override
 		public void token(String token) throws AuthHeaderParsingException {
-			throw new AuthHeaderParsingException(
-					"Token field not supported by Hawk authentication scheme");
+			throw parsingException(
+					"Token field not supported by Hawk authentication scheme", null);
+
+		}
 
+		private AuthHeaderParsingException parsingException(String message, Throwable cause) {
+			return AuthHeaderParsingException.create(stackless, message, cause);
+		}
+
+		/**
+		 * Receives the ranges from the parser, so that only the values of
+		 * known directives are materialized.
+		 */
+		private final class Ranges implements AuthDirectiveRangeBuilder {
+
+			@Override
+			public void scheme(CharSequence header, int start, int end)
+					throws AuthHeaderParsingException {
+				if (!Util.regionMatchesIgnoreCase(header, start, end, "hawk")) {
+					throw parsingException("Wrong auth scheme name "
+							+ Util.excerpt(header, start, end), null);
+				}
+			}
+
+			@Override
+			public void token(CharSequence header, int start, int end)
+					throws AuthHeaderParsingException {
+				throw parsingException(
+						"Token field not supported by Hawk authentication scheme", null);
+			}
+
+			@Override
+			public void param(CharSequence header, int keyStart, int keyEnd,
+					int valueStart, int valueEnd, boolean escaped)
+					throws AuthHeaderParsingException {
+				HawkDirective directive = HawkDirective.match(header,
+						keyStart, keyEnd);
+				if (directive != null) {
+					value(directive, header, valueStart, valueEnd, escaped);
+				}
+			}
 		}
 	}
 
@@ -0,0 +1,387 @@
+package net.jalg.hawkj;
+
+import java.nio.ByteBuffer;
+
+import javax.crypto.Mac;
+
+/**
+ * Read-only, flyweight view of a parsed WWW-Authenticate header.
+ *
+ * This is the counterpart of {@link AuthorizationHeaderView} for the 401
+ * responses clients receive, e.g. repeatedly while their clock is skewed. The
+ * ts is parsed from the header characters, the error is looked up from them
+ * and the tsm is only recorded as a range, which
+ * {@link #isValidTsm(String, HawkKey, Algorithm)} compares with the timestamp
+ * MAC without creating a String.
+ * <p>
+ * Views can be reused by calling one of the parse() methods for each header;
+ * parsing into a reused view and checking the tsm does not create any objects
+ * for the header, unless the tsm contains escaped characters. The view refers
+ * to the parsed header value, which must not be modified while the view is in
+ * use. Views are not thread safe.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public final class WwwAuthenticateHeaderView {
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private CharSequence headerValue;
+	private long ts;
+	private int tsmStart;
+	private int tsmEnd;
+	private boolean tsmEscaped;
+	private HawkError error;
+	private boolean stackless;
+
+	private final AuthDirectiveParser parser = new AuthDirectiveParser("",
+			new Collector());
+	private final AsciiSequence bytes = new AsciiSequence();
+	private final CharRange scratch = new CharRange();
+	private final CharRange challenge = new CharRange();
+
+	/**
+	 * Create an empty view for reuse with the parse() methods.
+	 */
+	public WwwAuthenticateHeaderView() {
+		reset();
+	}
+
+	/**
+	 * Clear all values and release the reference to the last header value.
+	 *
+	 * @return This view
+	 */
+	public WwwAuthenticateHeaderView reset() {
+		clear();
+		headerValue = null;
+		scratch.set(null, 0, 0);
+		challenge.set(null, 0, 0);
+		bytes.reset(EMPTY, 0, 0);
+		return this;
+	}
+
+	private void clear() {
+		ts = 0;
+		tsmStart = -1;
+		tsmEnd = -1;
+		tsmEscaped = false;
+		error = null;
+	}
+
+	/**
+	 * Set the limits for parsing header values into this view, instead of
+	 * the default limits.
+	 *
+	 * @param limits
+	 * @return This view
+	 */
+	public WwwAuthenticateHeaderView setLimits(AuthHeaderLimits limits) {
+		parser.setLimits(limits);
+		return this;
+	}
+
+	/**
+	 * Parse a WWW-Authenticate header value into this view, replacing the
+	 * previous values.
+	 *
+	 * @param value
+	 *            The header value.
+	 * @return This view
+	 * @throws AuthHeaderParsingException
+	 */
+	public WwwAuthenticateHeaderView parse(CharSequence value)
+			throws AuthHeaderParsingException {
+		if (value == null) {
+			throw new IllegalArgumentException("Unable to parse a null header value");
+		}
+		return parseValue(value);
+	}
+
+	/**
+	 * Parse a WWW-Authenticate header value from its raw bytes into this
+	 * view, replacing the previous values. Bytes are interpreted as
+	 * ISO-8859-1.
+	 *
+	 * @param bytes
+	 * @param offset
+	 *            Start of the header value in bytes.
+	 * @param length
+	 *            Length of the header value.
+	 * @return This view
+	 * @throws AuthHeaderParsingException
+	 */
+	public WwwAuthenticateHeaderView parse(byte[] bytes, int offset, int length)
+			throws AuthHeaderParsingException {
+		return parseValue(this.bytes.reset(bytes, offset, length));
+	}
+
+	/**
+	 * Parse a WWW-Authenticate header value from the raw bytes between
+	 * position and limit of a buffer into this view, replacing the previous
+	 * values. The position of the buffer is not changed.
+	 *
+	 * @param buffer
+	 * @return This view
+	 * @throws AuthHeaderParsingException
+	 */
+	public WwwAuthenticateHeaderView parse(ByteBuffer buffer)
+			throws AuthHeaderParsingException {
+		return parseValue(this.bytes.reset(buffer));
+	}
+
+	/**
+	 * Find the Hawk challenge in a WWW-Authenticate header value that may
+	 * contain several challenges, e.g. from upstreams that offer Basic,
+	 * Bearer and Hawk authentication, and parse it into this view.
+	 *
+	 * Only the Hawk challenge is tokenized; other challenges are skipped. The
+	 * values of several WWW-Authenticate headers can be checked one after the
+	 * other, or joined with commas.
+	 *
+	 * @param value
+	 *            The header value.
+	 * @return true if a Hawk challenge was found and parsed, false
+	 *         otherwise.
+	 * @throws AuthHeaderParsingException
+	 *             If the header value or the Hawk challenge is malformed.
+	 */
+	public boolean parseHawkChallenge(CharSequence value)
+			throws AuthHeaderParsingException {
+		if (value == null) {
+			throw new IllegalArgumentException("Unable to parse a null header value");
+		}
+		AuthHeaderLimits limits = parser.getLimits();
+		if (value.length() > limits.getMaxHeaderLength()) {
+			limits.reject(AuthHeaderLimits.Violation.HEADER_LENGTH);
+			throw parsingException("Header value of length " + value.length()
+					+ " exceeds the maximum length "
+					+ limits.getMaxHeaderLength());
+		}
+		long range = AuthDirectiveParser.findChallenge(value, "hawk",
+				stackless);
+		if (range < 0) {
+			clear();
+			headerValue = null;
+			return false;
+		}
+		parseValue(challenge.set(value, (int) (range >>> 32), (int) range));
+		return true;
+	}
+
+	/**
+	 * Find the Hawk challenge in the raw bytes of a WWW-Authenticate header
+	 * value and parse it into this view.
+	 *
+	 * @see #parseHawkChallenge(CharSequence)
+	 *
+	 * @param bytes
+	 * @param offset
+	 *            Start of the header value in bytes.
+	 * @param length
+	 *            Length of the header value.
+	 * @return true if a Hawk challenge was found and parsed, false
+	 *         otherwise.
+	 * @throws AuthHeaderParsingException
+	 */
+	public boolean parseHawkChallenge(byte[] bytes, int offset, int length)
+			throws AuthHeaderParsingException {
+		return parseHawkChallenge(this.bytes.reset(bytes, offset, length));
+	}
+
+	/**
+	 * Like {@link #parse(CharSequence)}, but reports a malformed header value
+	 * by status instead of throwing an exception.
+	 *
+	 * @param value
+	 *            The header value.
+	 * @return {@link HawkStatus#OK} or {@link HawkStatus#INVALID_HEADER}.
+	 */
+	public HawkStatus tryParse(CharSequence value) {
+		if (value == null) {
+			return HawkStatus.INVALID_HEADER;
+		}
+		setStackless(true);
+		try {
+			parseValue(value);
+			return HawkStatus.OK;
+		} catch (AuthHeaderParsingException e) {
+			return HawkStatus.INVALID_HEADER;
+		} finally {
+			setStackless(false);
+		}
+	}
+
+	private void setStackless(boolean stackless) {
+		this.stackless = stackless;
+		parser.setStackless(stackless);
+	}
+
+	private WwwAuthenticateHeaderView parseValue(CharSequence value)
+			throws AuthHeaderParsingException {
+		clear();
+		headerValue = value;
+		parser.reset(value);
+		parser.parse();
+		return this;
+	}
+
+	/**
+	 * Parse a WWW-Authenticate header value into a view.
+	 *
+	 * @param value
+	 *            The header value.
+	 * @return The view
+	 * @throws AuthHeaderParsingException
+	 */
+	public static WwwAuthenticateHeaderView wwwAuthenticate(CharSequence value)
+			throws AuthHeaderParsingException {
+		return new WwwAuthenticateHeaderView().parse(value);
+	}
+
+	public CharSequence getHeaderValue() {
+		return headerValue;
+	}
+
+	public long getTs() {
+		return ts;
+	}
+
+	public boolean hasTs() {
+		return ts != 0;
+	}
+
+	public boolean hasTsm() {
+		return tsmStart >= 0;
+	}
+
+	public String getTsm() {
+		if (!hasTsm()) {
+			return null;
+		}
+		if (tsmEscaped) {
+			return AuthDirectiveParser.unescape(headerValue, tsmStart, tsmEnd);
+		}
+		return headerValue.subSequence(tsmStart, tsmEnd).toString();
+	}
+
+	public CharSequence getTsmSequence() {
+		if (!hasTsm() || tsmEscaped) {
+			return getTsm();
+		}
+		return new CharRange(headerValue, tsmStart, tsmEnd);
+	}
+
+	public boolean hasError() {
+		return error != null;
+	}
+
+	public HawkError getError() {
+		return error;
+	}
+
+	/**
+	 * Check the tsm of this header against the MAC of its ts.
+	 *
+	 * @param id
+	 *            The credentials id, used to find a cached Mac.
+	 * @param key
+	 *            The credentials key
+	 * @param algorithm
+	 *            The credentials algorithm
+	 * @return true if the header has a ts and a tsm and the tsm matches, false
+	 *         otherwise.
+	 * @throws HawkException
+	 */
+	public boolean isValidTsm(String id, HawkKey key, Algorithm algorithm)
+			throws HawkException {
+		if (!hasTs() || !hasTsm()) {
+			return false;
+		}
+		BaseStringWriter w = BaseStringWriter.acquire();
+		w.append(ts).lf();
+		Mac mac = MacCache.getDefault().getMac(id, key, algorithm,
+				HawkWwwAuthenticateContext.HAWK_TS_MAC_PREFIX);
+		int len = w.doFinal(mac);
+		CharSequence tsm = tsmEscaped ? getTsm() : scratch.set(headerValue,
+				tsmStart, tsmEnd);
+		return Util.fixedTimeEqualBase64(w.macBuffer(), len, tsm);
+	}
+
+	/**
+	 * Materialize all values into a WwwAuthenticateHeader.
+	 *
+	 * @return The header
+	 */
+	public WwwAuthenticateHeader toWwwAuthenticateHeader() {
+		return WwwAuthenticateHeader.wwwAuthenticate().ts(ts).tsm(getTsm())
+				.error(error).build();
+	}
+
+	@Override
+	public String toString() {
+		return toWwwAuthenticateHeader().toString();
+	}
+
+	private AuthHeaderParsingException parsingException(String message) {
+		return AuthHeaderParsingException.create(stackless, message, null);
+	}
+
+	/**
+	 * Records the parameters into the enclosing view.
+	 */
+	private final class Collector implements AuthDirectiveRangeBuilder {
+
+		@Override
+		public void scheme(CharSequence header, int start, int end)
+				throws AuthHeaderParsingException {
+			if (!Util.regionMatchesIgnoreCase(header, start, end, "hawk")) {
+				throw parsingException("Wrong auth scheme name "
+						+ Util.excerpt(header, start, end));
+			}
+		}
+
+		@Override
+		public void token(CharSequence header, int start, int end)
+				throws AuthHeaderParsingException {
+			throw parsingException("Token field not supported by Hawk authentication scheme");
+		}
+
+		@Override
+		public void param(CharSequence header, int keyStart, int keyEnd,
+				int valueStart, int valueEnd, boolean escaped)
+				throws AuthHeaderParsingException {
+			HawkDirective directive = HawkDirective.match(header, keyStart,
+					keyEnd);
+			if (directive == null) {
+				// Ignore unknown parameter
+				return;
+			}
+			switch (directive) {
+			case TS:
+				ts = Util.parseNonNegativeLong(header, valueStart, valueEnd);
+				if (ts < 0) {
+					throw parsingException(Util.excerpt(header, valueStart,
+							valueEnd) + " is not a valid timestamp");
+				}
+				break;
+			case TSM:
+				tsmStart = valueStart;
+				tsmEnd = valueEnd;
+				tsmEscaped = escaped;
+				break;
+			case ERROR:
+				error = HawkError.fromCode(header, valueStart, valueEnd);
+				if (error == null) {
+					throw parsingException(Util.excerpt(header, valueStart,
+							valueEnd) + " is not a recognized Hawk error");
+				}
+				break;
+			default:
+				// Ignore parameters of other headers
+			}
+		}
+	}
+
+}
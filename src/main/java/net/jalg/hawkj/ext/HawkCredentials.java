@@ -1,13 +1,25 @@
 package net.jalg.hawkj.ext;
 
 import net.jalg.hawkj.Algorithm;
+import net.jalg.hawkj.HawkKey;
 
 public interface HawkCredentials {
-	
+
 	public String getId();
 
 	public String getPwd();
-	
+
 	public Algorithm getAlgorithm();
 
+	/**
+	 * Get the pre-encoded key. The default implementation encodes getPwd() on
+	 * every call; implementations should create the HawkKey once and return
+	 * that instance.
+	 *
+	 * @return The key
+	 */
+	public default HawkKey getHawkKey() {
+		return HawkKey.of(getPwd());
+	}
+
 }
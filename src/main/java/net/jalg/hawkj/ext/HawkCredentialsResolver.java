@@ -0,0 +1,25 @@
+package net.jalg.hawkj.ext;
+
+/**
+ * Looks up the credentials of a client by the id sent in its Authorization
+ * header.
+ *
+ * Resolvers that can look up an id without creating a String, e.g. by a hash
+ * of its characters, implement {@link HawkCredentialsSequenceResolver}
+ * instead.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public interface HawkCredentialsResolver {
+
+	/**
+	 * Find the credentials for an id.
+	 *
+	 * @param id
+	 *            The received id
+	 * @return The credentials or null, if the id is unknown.
+	 */
+	public HawkCredentials resolve(String id);
+
+}
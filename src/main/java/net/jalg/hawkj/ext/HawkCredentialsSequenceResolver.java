@@ -0,0 +1,28 @@
+package net.jalg.hawkj.ext;
+
+/**
+ * A {@link HawkCredentialsResolver} that looks up ids without creating a
+ * String.
+ *
+ * Verifiers pass the id as a CharSequence over the received header value to
+ * {@link #resolveSequence(CharSequence)}. The sequence is only valid during
+ * the call. It does not equal a String with the same characters, so it must
+ * not be used as a key of a map with String keys; compare its characters,
+ * e.g. with String.contentEquals(), instead.
+ *
+ * @author Jan Algermissen, http://jalg.net
+ *
+ */
+public interface HawkCredentialsSequenceResolver extends
+		HawkCredentialsResolver {
+
+	/**
+	 * Find the credentials for an id.
+	 *
+	 * @param id
+	 *            The received id, only valid during the call.
+	 * @return The credentials or null, if the id is unknown.
+	 */
+	public HawkCredentials resolveSequence(CharSequence id);
+
+}
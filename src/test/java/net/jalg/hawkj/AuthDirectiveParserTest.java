@@ -0,0 +1,167 @@
+package net.jalg.hawkj;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.jalg.hawkj.util.Charsets;
+
+import org.junit.Test;
+
+public class AuthDirectiveParserTest {
+
+	private static class RecordingBuilder implements AuthDirectiveBuilder {
+		private final List<String> events = new ArrayList<String>();
+
+		@Override
+		public void scheme(String scheme) {
+			events.add("scheme:" + scheme);
+		}
+
+		@Override
+		public void token(String token) {
+			events.add("token:" + token);
+		}
+
+		@Override
+		public void param(String key, String value) {
+			events.add(key + "=" + value);
+		}
+	}
+
+	private static List<String> parse(String value) throws AuthHeaderParsingException {
+		RecordingBuilder b = new RecordingBuilder();
+		new AuthDirectiveParser(value, b).parse();
+		return b.events;
+	}
+
+	@Test
+	public void testSchemeOnly() throws AuthHeaderParsingException {
+		assertEquals("[scheme:Hawk]", parse("  Hawk  ").toString());
+	}
+
+	@Test
+	public void testCommaInQuotedString() throws AuthHeaderParsingException {
+		assertEquals("[scheme:Hawk, id=someId, ext=a,b=c, ts=1]",
+				parse("Hawk id=\"someId\",ext=\"a,b=c\",ts=\"1\"").toString());
+	}
+
+	@Test
+	public void testEscapesInQuotedString() throws AuthHeaderParsingException {
+		assertEquals("[scheme:Hawk, ext=say \"hi\" \\ bye]",
+				parse("Hawk ext=\"say \\\"hi\\\" \\\\ b\\ye\"").toString());
+	}
+
+	@Test
+	public void testWhitespaceAndEmptyElements() throws AuthHeaderParsingException {
+		assertEquals("[scheme:Hawk, id=someId, ts=1, mac=ab/c+d==]",
+				parse("Hawk\t, id = \"someId\" ,, ts=1 ,\tmac=ab/c+d== ,").toString());
+	}
+
+	@Test
+	public void testToken68() throws AuthHeaderParsingException {
+		assertEquals("[scheme:Basic, token:QWxhZGRpbjpvcGVuIHNlc2FtZQ==]",
+				parse("Basic QWxhZGRpbjpvcGVuIHNlc2FtZQ==").toString());
+		assertEquals("[scheme:Foo, token:a=]", parse("Foo a=").toString());
+	}
+
+	@Test(expected = AuthHeaderParsingException.class)
+	public void testUnterminatedQuotedStringFails() throws AuthHeaderParsingException {
+		parse("Hawk id=\"someId");
+	}
+
+	@Test(expected = AuthHeaderParsingException.class)
+	public void testControlCharacterInQuotedStringFails() throws AuthHeaderParsingException {
+		parse("Hawk ext=\"a\nb\"");
+	}
+
+	@Test(expected = AuthHeaderParsingException.class)
+	public void testMissingCommaFails() throws AuthHeaderParsingException {
+		parse("Hawk id=\"someId\" ts=\"1\"");
+	}
+
+	@Test(expected = AuthHeaderParsingException.class)
+	public void testMissingValueFails() throws AuthHeaderParsingException {
+		parse("Hawk id=,ts=\"1\"");
+	}
+
+	@Test(expected = AuthHeaderParsingException.class)
+	public void testBadCharacterAfterSchemeFails() throws AuthHeaderParsingException {
+		parse("Hawk,id=\"someId\"");
+	}
+
+	@Test(expected = AuthHeaderParsingException.class)
+	public void testWhitespaceOnlyFails() throws AuthHeaderParsingException {
+		parse("   ");
+	}
+
+	private static List<String> parseBytes(String value) throws AuthHeaderParsingException {
+		RecordingBuilder b = new RecordingBuilder();
+		byte[] bytes = ("xx" + value).getBytes(Charsets.ISO_8859_1);
+		new AuthDirectiveParser(new AsciiSequence(bytes, 2, bytes.length - 2), b).parse();
+		return b.events;
+	}
+
+	@Test
+	public void testWordwiseScanningMatchesScalar() {
+		Random random = new Random(42);
+		byte[] special = { '"', '\\', 0x7F, 0, '\t', 0x1F, ' ', (byte) 0x80, (byte) 0xFF, '!' };
+		for (int n = 0; n < 2000; n++) {
+			byte[] b = new byte[3 + random.nextInt(40)];
+			for (int i = 0; i < b.length; i++) {
+				b[i] = (byte) ('a' + random.nextInt(26));
+			}
+			if (random.nextBoolean()) {
+				b[random.nextInt(b.length)] = special[random.nextInt(special.length)];
+			}
+			int off = random.nextInt(3);
+			AsciiSequence array = new AsciiSequence(b, off, b.length - off);
+			ByteBuffer direct = ByteBuffer.allocateDirect(b.length);
+			direct.put(b).position(off);
+			AsciiSequence buffer = new AsciiSequence(direct);
+			int from = random.nextInt(array.length());
+			int expected = array.length();
+			for (int i = from; i < array.length(); i++) {
+				char c = array.charAt(i);
+				if (c == '"' || c == '\\' || c < ' ' || c == 0x7F) {
+					expected = i;
+					break;
+				}
+			}
+			assertEquals(expected, array.indexOfQuotedSpecial(from, array.length()));
+			assertEquals(expected, buffer.indexOfQuotedSpecial(from, buffer.length()));
+		}
+	}
+
+	@Test
+	public void testLongQuotedStringFromBytes() throws AuthHeaderParsingException {
+		String ext = "some application data, with\ttabs and \\\"escapes\\\" and more than eight bytes \u00e4";
+		String value = "Hawk id=\"someId\", ext=\"" + ext + "\", ts=\"1\"";
+		assertEquals(parse(value), parseBytes(value));
+		try {
+			parseBytes("Hawk ext=\"0123456789abcdef\u0001\"");
+			fail();
+		} catch (AuthHeaderParsingException e) {
+			assertTrue(e.getMessage().contains("position 26"));
+		}
+	}
+
+	@Test
+	public void testReusedDirectBufferWithGrowingLimit() throws AuthHeaderParsingException {
+		String shorter = "Hawk id=\"someId\", ext=\"0123456789\"";
+		String longer = "Hawk id=\"someId\", ext=\"0123456789abcdefghijklmnopqrstuvwxyz\"";
+		ByteBuffer direct = ByteBuffer.allocateDirect(128);
+		AuthorizationHeaderView view = new AuthorizationHeaderView();
+
+		direct.put(shorter.getBytes(Charsets.ISO_8859_1)).flip();
+		assertEquals("0123456789", view.parse(direct).getExt());
+
+		direct.clear();
+		direct.put(longer.getBytes(Charsets.ISO_8859_1)).flip();
+		assertEquals("0123456789abcdefghijklmnopqrstuvwxyz", view.parse(direct).getExt());
+	}
+
+}
@@ -0,0 +1,106 @@
+package net.jalg.hawkj;
+
+import static org.junit.Assert.*;
+
+import net.jalg.hawkj.AuthHeaderLimits.Violation;
+
+import org.junit.Test;
+
+public class AuthHeaderLimitsTest {
+
+	private static AuthorizationHeader.AuthorizationBuilder builder(AuthHeaderLimits limits) {
+		return AuthorizationHeader.authorization().limits(limits);
+	}
+
+	private static String repeat(char c, int n) {
+		StringBuilder sb = new StringBuilder(n);
+		for (int i = 0; i < n; i++) {
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testHeaderLength() throws AuthHeaderParsingException {
+		AuthHeaderLimits limits = AuthHeaderLimits.builder().maxHeaderLength(20).build();
+		assertTrue(builder(limits).tryParse("Hawk id=\"1234567\"").isOk());
+		assertFalse(builder(limits).tryParse("Hawk id=\"12345678901\"").isOk());
+		assertEquals(1, limits.getRejections(Violation.HEADER_LENGTH));
+		assertEquals(0, limits.getRejections(Violation.VALUE_LENGTH));
+	}
+
+	@Test
+	public void testParameterCount() {
+		AuthHeaderLimits limits = AuthHeaderLimits.builder().maxParameters(2).build();
+		assertTrue(builder(limits).tryParse("Hawk id=\"a\", , nonce=\"b\",").isOk());
+		assertFalse(builder(limits).tryParse("Hawk id=\"a\", nonce=\"b\", mac=\"c\"").isOk());
+		assertEquals(1, limits.getRejections(Violation.PARAMETER_COUNT));
+		limits.resetRejections();
+		assertEquals(0, limits.getRejections(Violation.PARAMETER_COUNT));
+	}
+
+	@Test
+	public void testRejectionMessageIsBounded() {
+		AuthHeaderLimits limits = AuthHeaderLimits.builder().maxParameters(2).build();
+		String value = "Hawk id=\"a\", nonce=\"b\", ext=\"" + repeat('x', 4000) + "\"";
+		try {
+			builder(limits).parse(value);
+			fail();
+		} catch (AuthHeaderParsingException e) {
+			assertTrue(e.getMessage().length() < 100);
+		}
+		try {
+			builder(limits).parse("Hawk " + repeat('x', 4000) + "=\"a");
+			fail();
+		} catch (AuthHeaderParsingException e) {
+			assertTrue(e.getMessage().length() < 100);
+		}
+	}
+
+	@Test
+	public void testValueLength() {
+		AuthHeaderLimits limits = AuthHeaderLimits.builder().maxValueLength(8)
+				.maxValueLength(HawkDirective.NONCE, 4).build();
+		assertEquals(AuthHeaderLimits.DEFAULT_MAX_ID_LENGTH, limits.getMaxValueLength(HawkDirective.ID));
+		assertEquals(8, limits.getMaxValueLength(HawkDirective.EXT));
+		assertTrue(builder(limits).tryParse("Hawk nonce=\"abcd\", ext=\"12345678\", x=abcdefgh").isOk());
+		assertFalse(builder(limits).tryParse("Hawk nonce=\"abcde\"").isOk());
+		assertFalse(builder(limits).tryParse("Hawk NONCE=abcde").isOk());
+		assertFalse(builder(limits).tryParse("Hawk ext=\"123456789\"").isOk());
+		assertFalse(builder(limits).tryParse("Hawk ext=\"12345678").isOk());
+		assertFalse(builder(limits).tryParse("Hawk ext=\"123\\\"456789\"").isOk());
+		assertFalse(builder(limits).tryParse("Hawk x=abcdefghi").isOk());
+		assertEquals(5, limits.getRejections(Violation.VALUE_LENGTH));
+	}
+
+	@Test
+	public void testDefaultTsLength() {
+		assertTrue(AuthorizationHeader.tryAuthorization("Hawk ts=\"" + Long.MAX_VALUE + "\"").isOk());
+		assertFalse(AuthorizationHeader.tryAuthorization("Hawk ts=\"" + repeat('1', 20) + "\"").isOk());
+	}
+
+	@Test
+	public void testView() throws AuthHeaderParsingException {
+		AuthHeaderLimits limits = AuthHeaderLimits.builder().maxValueLength(HawkDirective.ID, 3).build();
+		AuthorizationHeaderView v = new AuthorizationHeaderView().setLimits(limits);
+		assertEquals("abc", v.parse("Hawk id=\"abc\"").getId());
+		try {
+			v.parse("Hawk id=\"" + repeat('a', 10000) + "\"");
+			fail();
+		} catch (AuthHeaderParsingException e) {
+			assertEquals(1, limits.getRejections(Violation.HEADER_LENGTH));
+		}
+		try {
+			v.parse("Hawk id=\"abcd\"");
+			fail();
+		} catch (AuthHeaderParsingException e) {
+			assertEquals(1, limits.getRejections(Violation.VALUE_LENGTH));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidLimit() {
+		AuthHeaderLimits.builder().maxParameters(0);
+	}
+
+}
@@ -2,6 +2,9 @@ package net.jalg.hawkj;
 
 import static org.junit.Assert.*;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
 import net.jalg.hawkj.Algorithm;
 import net.jalg.hawkj.AuthorizationHeader;
 import net.jalg.hawkj.HawkContext;
@@ -49,6 +52,59 @@ public class AuthorizationHeaderGenerationTest {
 
 	}
 
+	@Test
+	public void testWriteTo() throws Exception {
+		AuthorizationHeader h = AuthorizationHeader.authorization().id("someId").mac("m").hash("h")
+				.ts(Long.MAX_VALUE).nonce("abc").ext("a \"quoted\" \\ ext").app("myApp").dlg("d").build();
+		String expected = "Hawk id=\"someId\",mac=\"m\",hash=\"h\",ts=\"" + Long.MAX_VALUE
+				+ "\",nonce=\"abc\",ext=\"a \\\"quoted\\\" \\\\ ext\",app=\"myApp\",dlg=\"d\"";
+		assertEquals(expected, h.toString());
+		assertEquals(expected.length(), h.length());
+		StringBuilder sb = new StringBuilder("Server-Authorization: ");
+		h.writeTo(sb);
+		assertEquals("Server-Authorization: " + expected, sb.toString());
+		assertEquals("a \"quoted\" \\ ext", AuthorizationHeader.authorization(h.toString()).getExt());
 
+		ByteBuffer buf = ByteBuffer.allocateDirect(expected.length() + 2);
+		buf.put((byte) 'x');
+		h.writeTo(buf);
+		assertEquals(expected.length() + 1, buf.position());
+		byte[] written = new byte[expected.length()];
+		buf.position(1);
+		buf.get(written);
+		assertEquals(expected, new String(written, Charsets.ISO_8859_1));
+	}
+
+	@Test
+	public void testWriteToSmallBuffer() {
+		AuthorizationHeader h = AuthorizationHeader.authorization().id("someId").ts(-12).build();
+		assertEquals("Hawk id=\"someId\",ts=\"-12\"", h.toString());
+		ByteBuffer buf = ByteBuffer.allocate(h.length() - 1);
+		try {
+			h.writeTo(buf);
+			fail();
+		} catch (BufferOverflowException e) {
+			assertEquals(0, buf.position());
+		}
+	}
+
+	@Test
+	public void testWriteToBufferWithNonLatin1Ext() {
+		AuthorizationHeader h = AuthorizationHeader.authorization().id("someId").ts(1)
+				.nonce("abc").ext("caf\u00e9 \u20ac").mac("m").build();
+		assertEquals("Hawk id=\"someId\",mac=\"m\",ts=\"1\",nonce=\"abc\",ext=\"caf\u00e9 \u20ac\"", h.toString());
+		ByteBuffer buf = ByteBuffer.allocate(h.length());
+		try {
+			h.writeTo(buf);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals(0, buf.position());
+			assertEquals(0, buf.get(0));
+		}
+		AuthorizationHeader latin1 = AuthorizationHeader.authorization().id("someId").ext("caf\u00e9").build();
+		buf.clear();
+		latin1.writeTo(buf);
+		assertEquals(latin1.length(), buf.position());
+	}
 
 }
@@ -87,6 +87,19 @@ public class AuthorizationHeaderParsingTest {
 
     }
 
+    @Test
+    public void reusedBuilderIsReset() throws AuthHeaderParsingException {
+        AuthorizationHeader.AuthorizationBuilder b = AuthorizationHeader.authorization();
+        AuthorizationHeader h1 = b.parse("Hawk id=\"someId\",ts=\"1\",nonce=\"abc\",app=\"myApp\"").build();
+        AuthorizationHeader h2 = b.parse("Hawk id=\"otherId\",ts=\"2\",nonce=\"def\"").build();
+        assertEquals("someId", h1.getId());
+        assertEquals("myApp", h1.getApp());
+        assertEquals("otherId", h2.getId());
+        assertEquals(2, h2.getTs());
+        assertNull(h2.getApp());
+        assertNull(b.reset().build().getId());
+    }
+
 //    @Test
 //    public void testHeaderGenerationWithApp() throws HawkException {
 //        HawkContext j = HawkContext.request("GET", "/foo", "example.com", 80).
@@ -140,6 +153,12 @@ public class AuthorizationHeaderParsingTest {
 //		System.out.println("H:" + h.toString());
 //	}
 
-
+	@Test
+	public void testParsingTs() throws AuthHeaderParsingException {
+		assertEquals(Long.MAX_VALUE, AuthorizationHeader.authorization("Hawk ts=\"" + Long.MAX_VALUE + "\"").getTs());
+		assertEquals(42, AuthorizationHeader.authorization("Hawk ts=42").getTs());
+		assertFalse(AuthorizationHeader.tryAuthorization("Hawk ts=\"9223372036854775808\"").isOk());
+		assertFalse(AuthorizationHeader.tryAuthorization("Hawk ts=\"1x\"").isOk());
+	}
 
 }
@@ -0,0 +1,139 @@
+package net.jalg.hawkj;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import net.jalg.hawkj.util.Charsets;
+
+import org.junit.Test;
+
+public class AuthorizationHeaderViewTest {
+
+	private static final String HV = "Hawk id=\"someId\",mac=\"y+ktx5w5gxwRi4IzwptaDl79q0GG+fD4THhtaKTdZw4=\",ts=\"1\",nonce=\"abc\",app=\"myApp\"";
+
+	@Test
+	public void testFields() throws AuthHeaderParsingException {
+		AuthorizationHeaderView v = AuthorizationHeaderView.authorization(HV);
+		assertEquals("someId", v.getId());
+		assertEquals(1, v.getTs());
+		assertEquals("abc", v.getNonce());
+		assertEquals("myApp", v.getApp());
+		assertEquals("y+ktx5w5gxwRi4IzwptaDl79q0GG+fD4THhtaKTdZw4=", v.getMacSequence().toString());
+		assertFalse(v.hasHash());
+		assertNull(v.getHash());
+		assertNull(v.getDlgSequence());
+		assertSame(HV, v.getHeaderValue());
+	}
+
+	@Test
+	public void testSequence() throws AuthHeaderParsingException {
+		AuthorizationHeaderView v = AuthorizationHeaderView.authorization(new StringBuilder(HV));
+		CharSequence id = v.getIdSequence();
+		assertEquals(6, id.length());
+		assertEquals('s', id.charAt(0));
+		assertEquals("meI", id.subSequence(2, 5).toString());
+	}
+
+	@Test
+	public void testEscapedValue() throws AuthHeaderParsingException {
+		AuthorizationHeaderView v = AuthorizationHeaderView.authorization("Hawk id=\"a\\\"b\",ext=\"x,y\"");
+		assertEquals("a\"b", v.getId());
+		assertEquals("a\"b", v.getIdSequence().toString());
+		assertEquals("x,y", v.getExt());
+	}
+
+	@Test
+	public void testSameAsAuthorizationHeader() throws AuthHeaderParsingException {
+		AuthorizationHeader h = AuthorizationHeader.authorization(HV);
+		assertEquals(h.toString(), AuthorizationHeaderView.authorization(HV).toAuthorizationHeader().toString());
+	}
+
+	@Test
+	public void testValidateMacFromSequence() throws AuthHeaderParsingException, HawkException {
+		AuthorizationHeaderView v = AuthorizationHeaderView.authorization(HV);
+		HawkContext c = HawkContext.request("GET", "/foo", "example.com", 80)
+				.credentials(v.getId(), "someKey", Algorithm.SHA_256).tsAndNonce(v.getTs(), v.getNonce())
+				.app(v.getApp()).build();
+		assertTrue(c.isValidMac(v.getMacSequence()));
+	}
+
+	@Test(expected = AuthHeaderParsingException.class)
+	public void testBadSchemeFails() throws AuthHeaderParsingException {
+		AuthorizationHeaderView.authorization("Hawki id=\"someId\"");
+	}
+
+	@Test(expected = AuthHeaderParsingException.class)
+	public void testBadTsFails() throws AuthHeaderParsingException {
+		AuthorizationHeaderView.authorization("Hawk id=\"someId\",ts=\"x\"");
+	}
+
+	@Test
+	public void testParseFromBytes() throws AuthHeaderParsingException {
+		byte[] raw = ("Authorization: " + HV + "\r\n").getBytes(Charsets.US_ASCII);
+		AuthorizationHeaderView v = AuthorizationHeaderView.authorization(raw, 15, HV.length());
+		assertEquals("someId", v.getId());
+		assertEquals("abc", v.getNonceSequence().toString());
+		assertEquals(1, v.getTs());
+	}
+
+	@Test
+	public void testParseFromDirectBuffer() throws AuthHeaderParsingException {
+		byte[] raw = HV.getBytes(Charsets.US_ASCII);
+		ByteBuffer direct = ByteBuffer.allocateDirect(raw.length);
+		direct.put(raw).flip();
+		AuthorizationHeaderView v = AuthorizationHeaderView.authorization(direct);
+		assertEquals("myApp", v.getApp());
+		assertEquals(0, direct.position());
+	}
+
+	@Test
+	public void testIsValidMacFromBytes() throws AuthHeaderParsingException, HawkException {
+		HawkContext c = HawkContext.request("POST", "/foo", "example.com", 80)
+				.credentials("someId", "someKey", Algorithm.SHA_256).tsAndNonce(1353832234, "j4h3g2")
+				.hash("/CHyeMJ3XrecG754kxnsP1A8X3TY6VjYQD8eCI2wMm4=").ext("some, ext").app("myApp").dlg("me").build();
+		String hv = c.createAuthorizationHeader().toString();
+		byte[] raw = hv.getBytes(Charsets.US_ASCII);
+		ByteBuffer direct = ByteBuffer.allocateDirect(raw.length);
+		direct.put(raw).flip();
+
+		HawkKey key = HawkKey.of("someKey");
+		AuthorizationHeaderView v = AuthorizationHeaderView.authorization(raw, 0, raw.length);
+		assertTrue(v.isValidMac("POST", "/foo", "example.com", 80, "someId", key, Algorithm.SHA_256));
+		assertFalse(v.isValidMac("POST", "/bar", "example.com", 80, "someId", key, Algorithm.SHA_256));
+		assertFalse(v.isValidMac("POST", "/foo", "example.com", 80, "someId", HawkKey.of("otherKey"), Algorithm.SHA_256));
+		assertTrue(AuthorizationHeaderView.authorization(direct)
+				.isValidMac("POST", "/foo", "example.com", 80, "someId", key, Algorithm.SHA_256));
+		assertTrue(AuthorizationHeaderView.authorization(hv)
+				.isValidMac("POST", "/foo", "example.com", 80, "someId", key, Algorithm.SHA_256));
+	}
+
+	@Test
+	public void testIsValidMacWithoutMacIsFalse() throws AuthHeaderParsingException, HawkException {
+		AuthorizationHeaderView v = AuthorizationHeaderView.authorization("Hawk id=\"someId\",ts=\"1\",nonce=\"abc\"");
+		assertFalse(v.isValidMac("GET", "/foo", "example.com", 80, "someId", HawkKey.of("someKey"), Algorithm.SHA_256));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testBadRangeFails() throws AuthHeaderParsingException {
+		AuthorizationHeaderView.authorization(new byte[4], 2, 3);
+	}
+
+	@Test
+	public void testReuse() throws AuthHeaderParsingException, HawkException {
+		AuthorizationHeaderView v = new AuthorizationHeaderView();
+		assertNull(v.getId());
+		v.parse(HV);
+		assertEquals("myApp", v.getApp());
+		byte[] raw = "Hawk id=\"otherId\",ts=\"2\"".getBytes(Charsets.US_ASCII);
+		assertSame(v, v.parse(raw, 0, raw.length));
+		assertEquals("otherId", v.getId());
+		assertEquals(2, v.getTs());
+		assertFalse(v.hasApp());
+		assertFalse(v.hasMac());
+		v.reset();
+		assertNull(v.getHeaderValue());
+		assertEquals(0, v.getTs());
+	}
+
+}
@@ -0,0 +1,63 @@
+package net.jalg.hawkj;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import net.jalg.hawkj.util.Charsets;
+
+import org.junit.Test;
+
+public class BaseStringWriterTest {
+
+	private static void assertEncodes(String s) {
+		BaseStringWriter w = new BaseStringWriter().append(s);
+		byte[] expected = s.getBytes(Charsets.UTF_8);
+		assertArrayEquals(expected, Arrays.copyOf(w.buffer(), w.length()));
+	}
+
+	@Test
+	public void testEncodingIsIdenticalToGetBytes() {
+		assertEncodes("");
+		assertEncodes("/resource?a=1&b=2");
+		assertEncodes("süß");
+		assertEncodes("€ 100");
+		assertEncodes("😀 smile");
+		assertEncodes("lone \ud83d high");
+		assertEncodes("lone \ude00 low");
+		assertEncodes("trailing \ud83d");
+	}
+
+	@Test
+	public void testGrowsBeyondInitialCapacity() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			sb.append("aä");
+		}
+		assertEncodes(sb.toString());
+	}
+
+	@Test
+	public void testLongs() {
+		long[] values = { 0, 7, 10, 1353832234, Long.MAX_VALUE, -42, Long.MIN_VALUE };
+		for (long v : values) {
+			assertEquals(Long.toString(v), new BaseStringWriter().append(v).toString());
+		}
+	}
+
+	@Test
+	public void testAcquireResets() {
+		BaseStringWriter.acquire().append("foo").lf();
+		assertEquals(0, BaseStringWriter.acquire().length());
+	}
+
+	@Test
+	public void testRanges() {
+		byte[] raw = { 'x', 'a', (byte) 0xC3, (byte) 0xA4, 'b', 'y' };
+		BaseStringWriter w = new BaseStringWriter();
+		w.append(new CharRange(new AsciiSequence(raw, 0, raw.length), 1, 5));
+		w.append(new StringBuilder("-aä-"), 1, 3);
+		assertEquals("aäbaä", w.toString());
+	}
+
+}
@@ -0,0 +1,89 @@
+package net.jalg.hawkj;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+public class BuiltinHmacTest {
+
+	private static byte[] jca(Algorithm algorithm, byte[] key, byte[] data) throws Exception {
+		Mac mac = Mac.getInstance(algorithm.getMacName());
+		mac.init(new SecretKeySpec(key, algorithm.getMacName()));
+		return mac.doFinal(data);
+	}
+
+	@Test
+	public void testMatchesJcaForVariousKeyAndInputLengths() throws Exception {
+		Random r = new Random(42);
+		int[] keyLengths = { 1, 13, 63, 64, 65, 200 };
+		int[] dataLengths = { 0, 1, 55, 56, 63, 64, 65, 119, 120, 1000 };
+		for (Algorithm algorithm : new Algorithm[] { Algorithm.SHA_1, Algorithm.SHA_256 }) {
+			BuiltinHmac hmac = BuiltinHmac.getInstance(algorithm);
+			for (int kl : keyLengths) {
+				byte[] key = new byte[kl];
+				r.nextBytes(key);
+				hmac.init(key, 0, key.length);
+				for (int dl : dataLengths) {
+					byte[] data = new byte[dl];
+					r.nextBytes(data);
+					// Feed in two parts to exercise partial blocks
+					hmac.update(data, 0, dl / 3);
+					hmac.update(data, dl / 3, dl - dl / 3);
+					assertArrayEquals(algorithm + " key=" + kl + " data=" + dl,
+							jca(algorithm, key, data), hmac.doFinal());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testInitFromKeyedInstance() throws Exception {
+		byte[] key = "werxhqb98rpaxn39848xrunpaw3489ruxnpa98w4rxn".getBytes("UTF-8");
+		byte[] data = "hawk.1.header\n".getBytes("UTF-8");
+		BuiltinHmac keyed = BuiltinHmac.getInstance(Algorithm.SHA_256);
+		keyed.init(key, 0, key.length);
+		BuiltinHmac hmac = BuiltinHmac.getInstance(Algorithm.SHA_256);
+		hmac.init(keyed);
+		hmac.update(data);
+		assertArrayEquals(jca(Algorithm.SHA_256, key, data), hmac.doFinal());
+	}
+
+	@Test
+	public void testCopyStateContinuesAfterPrefix() throws Exception {
+		byte[] key = "werxhqb98rpaxn39848xrunpaw3489ruxnpa98w4rxn".getBytes("UTF-8");
+		byte[] rest = "1353832234\nj4h3g2\nGET\n/resource/1?b=1&a=2\nexample.com\n8000\n\nsome-app-ext-data\n".getBytes("UTF-8");
+		for (String prefix : new String[] { "hawk.1.header\n",
+				"a prefix that is longer than one block of sixty-four bytes, hawk.1.header\n" }) {
+			byte[] p = prefix.getBytes("UTF-8");
+			BuiltinHmac prefixed = BuiltinHmac.getInstance(Algorithm.SHA_1);
+			prefixed.init(key, 0, key.length);
+			prefixed.update(p);
+			byte[] all = new byte[p.length + rest.length];
+			System.arraycopy(p, 0, all, 0, p.length);
+			System.arraycopy(rest, 0, all, p.length, rest.length);
+
+			BuiltinHmac hmac = BuiltinHmac.getInstance(Algorithm.SHA_1);
+			for (int i = 0; i < 2; i++) {
+				hmac.copyState(prefixed);
+				hmac.update(rest);
+				assertArrayEquals(jca(Algorithm.SHA_1, key, all), hmac.doFinal());
+			}
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testUnkeyedUpdateFails() {
+		BuiltinHmac.getInstance(Algorithm.SHA_1).update(new byte[] { 1 });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMd5IsNotSupported() {
+		BuiltinHmac.getInstance(Algorithm.MD5);
+	}
+
+}
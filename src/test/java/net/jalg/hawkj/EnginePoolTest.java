@@ -0,0 +1,77 @@
+package net.jalg.hawkj;
+
+import static org.junit.Assert.*;
+
+import net.jalg.hawkj.util.Charsets;
+
+import org.junit.Test;
+
+public class EnginePoolTest {
+
+	private static final byte[] KEY = "someKey".getBytes(Charsets.UTF_8);
+	private static final byte[] DATA = "some data".getBytes(Charsets.UTF_8);
+
+	@Test
+	public void testThreadLocalPoolReusesReleasedEngines() {
+		EnginePool pool = new ThreadLocalEnginePool();
+		BuiltinHmac hmac = pool.acquireBuiltinHmac(Algorithm.SHA_1);
+		pool.releaseBuiltinHmac(Algorithm.SHA_1, hmac);
+		assertSame(hmac, pool.acquireBuiltinHmac(Algorithm.SHA_1));
+	}
+
+	@Test
+	public void testThreadLocalPoolNestedAcquireYieldsNewEngine() {
+		EnginePool pool = new ThreadLocalEnginePool();
+		BuiltinHmac hmac1 = pool.acquireBuiltinHmac(Algorithm.SHA_256);
+		BuiltinHmac hmac2 = pool.acquireBuiltinHmac(Algorithm.SHA_256);
+		assertNotSame(hmac1, hmac2);
+	}
+
+	@Test
+	public void testSharedPoolReusesReleasedEngines() {
+		EnginePool pool = new SharedEnginePool(1);
+		BuiltinHmac hmac1 = pool.acquireBuiltinHmac(Algorithm.SHA_256);
+		BuiltinHmac hmac2 = pool.acquireBuiltinHmac(Algorithm.SHA_256);
+		pool.releaseBuiltinHmac(Algorithm.SHA_256, hmac1);
+		pool.releaseBuiltinHmac(Algorithm.SHA_256, hmac2);
+		assertSame(hmac1, pool.acquireBuiltinHmac(Algorithm.SHA_256));
+		assertNotSame(hmac2, pool.acquireBuiltinHmac(Algorithm.SHA_256));
+	}
+
+	@Test
+	public void testReleasedEngineCanBeRekeyed() {
+		EnginePool[] pools = { new ThreadLocalEnginePool(), new SharedEnginePool() };
+		BuiltinHmac keyed = BuiltinHmac.getInstance(Algorithm.SHA_256);
+		keyed.init(KEY, 0, KEY.length);
+		keyed.update(DATA);
+		byte[] expected = keyed.doFinal();
+		for (EnginePool pool : pools) {
+			BuiltinHmac hmac = pool.acquireBuiltinHmac(Algorithm.SHA_256);
+			hmac.init(keyed);
+			hmac.update("garbage".getBytes(Charsets.UTF_8));
+			pool.releaseBuiltinHmac(Algorithm.SHA_256, hmac);
+			hmac = pool.acquireBuiltinHmac(Algorithm.SHA_256);
+			hmac.init(keyed);
+			hmac.update(DATA);
+			assertArrayEquals(expected, hmac.doFinal());
+		}
+	}
+
+	@Test
+	public void testBuiltinMacWithSharedPool() throws HawkException {
+		EnginePool previous = EnginePool.getDefault();
+		EnginePool.setDefault(new SharedEnginePool());
+		try {
+			HawkContext jca = HawkContext.request("GET", "/foo", "example.com", 80)
+					.credentials("someId", "someKey", Algorithm.SHA_256).tsAndNonce(1, "abc").build();
+			HawkContext builtin = HawkContext.request("GET", "/foo", "example.com", 80)
+					.credentials("someId", "someKey", Algorithm.SHA_256).tsAndNonce(1, "abc")
+					.macImplementation(MacImplementation.BUILTIN).build();
+			assertEquals(jca.createAuthorizationHeader().getMac(),
+					builtin.createAuthorizationHeader().getMac());
+		} finally {
+			EnginePool.setDefault(previous);
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+package net.jalg.hawkj;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+public class HawkAsyncVerifierTest {
+
+	private static HawkContext context() throws HawkException {
+		return HawkContext.request("GET", "/foo", "example.com", 80)
+				.credentials("someId", "someKey", Algorithm.SHA_256).tsAndNonce(1, "abc").build();
+	}
+
+	@Test
+	public void testVerifyAsync() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			HawkAsyncVerifier verifier = new HawkAsyncVerifier(executor);
+			HawkContext c = context();
+			String mac = c.createAuthorizationHeader().getMac();
+			assertTrue(verifier.verifyAsync(c, mac).get());
+			assertFalse(verifier.verifyAsync(c, "bogus").get());
+			assertFalse(verifier.verifyAsync(c, null).get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testInFlightLimitRejectsWithoutBlocking() throws Exception {
+		final List<Runnable> queued = new ArrayList<Runnable>();
+		Executor holding = new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				queued.add(command);
+			}
+		};
+		HawkAsyncVerifier verifier = new HawkAsyncVerifier(holding, 1);
+		HawkContext c = context();
+		CompletableFuture<Boolean> first = verifier.verifyAsync(c, "x");
+		CompletableFuture<Boolean> second = verifier.verifyAsync(c, "x");
+		assertEquals(1, verifier.getInFlight());
+		try {
+			second.get();
+			fail("Expected rejection");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+		queued.get(0).run();
+		assertFalse(first.get());
+		assertEquals(0, verifier.getInFlight());
+	}
+
+	@Test
+	public void testVirtualThreadExecutorIfAvailable() throws Exception {
+		ExecutorService executor;
+		try {
+			executor = HawkAsyncVerifier.newVirtualThreadPerTaskExecutor();
+		} catch (UnsupportedOperationException e) {
+			return; // Runtime without virtual threads
+		}
+		try {
+			HawkContext c = context();
+			assertTrue(new HawkAsyncVerifier(executor).verifyAsync(c, c.createAuthorizationHeader().getMac()).get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
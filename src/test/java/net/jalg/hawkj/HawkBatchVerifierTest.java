@@ -0,0 +1,75 @@
+package net.jalg.hawkj;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import net.jalg.hawkj.util.Charsets;
+
+import org.junit.Test;
+
+public class HawkBatchVerifierTest {
+
+	private static HawkContext context(String id, String key, long ts, MacImplementation impl) throws HawkException {
+		return HawkContext.request("GET", "/foo", "example.com", 80)
+				.credentials(id, key, Algorithm.SHA_256).tsAndNonce(ts, "abc")
+				.macImplementation(impl).build();
+	}
+
+	@Test
+	public void testResultsAreInInputOrder() throws HawkException {
+		HawkBatchVerifier batch = new HawkBatchVerifier();
+		boolean[] expected = new boolean[40];
+		for (int i = 0; i < expected.length; i++) {
+			MacImplementation impl = i % 3 == 0 ? MacImplementation.BUILTIN : MacImplementation.JCA;
+			HawkContext c = context("id" + (i % 4), "key" + (i % 4), i + 1, impl);
+			String mac = c.createAuthorizationHeader().getMac();
+			expected[i] = i % 5 != 0;
+			if (!expected[i]) {
+				// MAC of a different request
+				mac = context("id" + (i % 4), "key" + (i % 4), i + 1000, impl).createAuthorizationHeader().getMac();
+			}
+			assertEquals(i, batch.add(c, mac));
+		}
+		assertEquals(Arrays.toString(expected), Arrays.toString(batch.verify()));
+	}
+
+	@Test
+	public void testNullMacIsInvalid() throws HawkException {
+		HawkBatchVerifier batch = new HawkBatchVerifier();
+		batch.add(context("someId", "someKey", 1, MacImplementation.JCA), (String) null);
+		assertFalse(batch.verify()[0]);
+	}
+
+	@Test
+	public void testEmptyBatch() throws HawkException {
+		assertEquals(0, new HawkBatchVerifier().verify().length);
+	}
+
+	@Test
+	public void testParallelMatchesSequential() throws HawkException {
+		HawkBatchVerifier batch = new HawkBatchVerifier();
+		for (int i = 0; i < 1000; i++) {
+			HawkContext c = context("id" + (i % 7), "key" + (i % 7), i + 1, MacImplementation.JCA);
+			String mac = i % 11 == 0 ? "bogus" : c.createAuthorizationHeader().getMac();
+			batch.add(c, mac);
+		}
+		String expected = Arrays.toString(batch.verify());
+		assertEquals(expected, Arrays.toString(batch.verifyParallel()));
+		assertEquals(expected, Arrays.toString(batch.verifyParallel(4, 16)));
+	}
+
+	@Test
+	public void testPayloadHashIsVerified() throws HawkException {
+		byte[] body = "some body".getBytes(Charsets.UTF_8);
+		HawkContext c = HawkContext.request("POST", "/foo", "example.com", 80)
+				.credentials("someId", "someKey", Algorithm.SHA_256).tsAndNonce(1, "abc")
+				.body(body, "text/plain").build();
+		String mac = c.createAuthorizationHeader().getMac();
+		HawkBatchVerifier batch = new HawkBatchVerifier();
+		batch.add(c, mac, body, "text/plain");
+		batch.add(c, mac, "other body".getBytes(Charsets.UTF_8), "text/plain");
+		assertEquals("[true, false]", Arrays.toString(batch.verify()));
+	}
+
+}
@@ -101,4 +101,40 @@ public class HawkCompatibilityTest {
 				h.toString());
 	}
 
+	/** The client.js vectors from above, computed with the built-in HMAC
+	 * implementation.
+	 * @throws HawkException
+	 */
+	@Test
+	public void testBuiltinHmacMatchesJca() throws HawkException {
+		HawkContext j = HawkContext
+				.request("POST", "/somewhere/over/the/rainbow", "example.net",
+						80)
+				.credentials("123456", "2983d45yun89q", Algorithm.SHA_1)
+				.tsAndNonce(1353809207, "Ygvqdz")
+				.body("something to write about"
+						.getBytes(Charsets.UTF_8),
+						"").ext("Bazinga!").macImplementation(MacImplementation.BUILTIN).build();
+		AuthorizationHeader h = j.createAuthorizationHeader();
+		assertEquals("qbf1ZPG/r/e06F4ht+T77LXi5vw=", h.getMac());
+
+		j = HawkContext
+				.request("POST", "/somewhere/over/the/rainbow", "example.net",
+						443)
+				.credentials("123456", "2983d45yun89q", Algorithm.SHA_256)
+				.tsAndNonce(1353809207, "Ygvqdz")
+				.body("something to write about"
+						.getBytes(Charsets.UTF_8),
+						"text/plain").ext("Bazinga!").macImplementation(MacImplementation.BUILTIN).build();
+		assertTrue(j.isValidMac("q1CwFoSHzPZSkbIvl0oYlD+91rBUEvFk763nMjMndj8="));
+		assertEquals(MacImplementation.BUILTIN, j.cloneC().build().getMacImplementation());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuiltinHmacRejectsMd5() throws HawkException {
+		HawkContext.request("GET", "/", "example.net", 80)
+				.credentials("123456", "2983d45yun89q", Algorithm.MD5)
+				.macImplementation(MacImplementation.BUILTIN);
+	}
+
 }
@@ -0,0 +1,56 @@
+package net.jalg.hawkj;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class HawkDirectiveTest {
+
+	@Test
+	public void testAllNames() {
+		for (HawkDirective d : HawkDirective.values()) {
+			assertSame(d, HawkDirective.match(d.getName()));
+			assertSame(d, HawkDirective.match(d.getName().toUpperCase()));
+		}
+	}
+
+	@Test
+	public void testMixedCase() {
+		assertSame(HawkDirective.NONCE, HawkDirective.match("NoNcE"));
+		assertSame(HawkDirective.ID, HawkDirective.match("Id"));
+		assertSame(HawkDirective.TSM, HawkDirective.match("tSm"));
+	}
+
+	@Test
+	public void testRange() {
+		String s = "Hawk id=\"x\", hash=\"y\"";
+		assertSame(HawkDirective.ID, HawkDirective.match(s, 5, 7));
+		assertSame(HawkDirective.HASH, HawkDirective.match(s, 13, 17));
+		assertNull(HawkDirective.match(s, 0, 4));
+	}
+
+	@Test
+	public void testUnknownNames() {
+		assertNull(HawkDirective.match(""));
+		assertNull(HawkDirective.match("i"));
+		assertNull(HawkDirective.match("ids"));
+		assertNull(HawkDirective.match("tsx"));
+		assertNull(HawkDirective.match("hawk"));
+		assertNull(HawkDirective.match("realm"));
+		assertNull(HawkDirective.match("nonces"));
+		assertNull(HawkDirective.match("iŉ"));
+		// Only letters match their upper case variant
+		assertNull(HawkDirective.match("i\u0004"));
+	}
+
+	@Test
+	public void testBuilderDispatchIgnoresCase() throws AuthHeaderParsingException {
+		AuthorizationHeader h = AuthorizationHeader
+				.authorization("Hawk ID=\"someId\", TS=\"1\", Nonce=\"abc\", MAC=\"m\", Error=\"ignored\"");
+		assertEquals("someId", h.getId());
+		assertEquals(1, h.getTs());
+		assertEquals("abc", h.getNonce());
+		assertEquals("m", h.getMac());
+	}
+
+}
@@ -0,0 +1,94 @@
+package net.jalg.hawkj;
+
+import static org.junit.Assert.*;
+
+import net.jalg.hawkj.ext.HawkCredentials;
+import net.jalg.hawkj.util.Charsets;
+
+import org.junit.Test;
+
+public class HawkKeyTest {
+
+	private static final String KEY = "werxhqb98rpaxn39848xrunpaw3489ruxnpa98w4rxn";
+
+	@Test
+	public void testStringAndBytesAreEqual() {
+		HawkKey k1 = HawkKey.of(KEY);
+		HawkKey k2 = HawkKey.of(KEY.getBytes(Charsets.UTF_8));
+		assertEquals(k1, k2);
+		assertEquals(k1.hashCode(), k2.hashCode());
+		assertEquals(KEY, k2.asString());
+		assertFalse(k1.equals(HawkKey.of("otherKey")));
+	}
+
+	@Test
+	public void testSecretKeyIsShared() {
+		HawkKey k = HawkKey.of(KEY);
+		assertSame(k.getSecretKey(Algorithm.SHA_256),
+				k.getSecretKey(Algorithm.SHA_256));
+		assertEquals("HmacSHA1", k.getSecretKey(Algorithm.SHA_1).getAlgorithm());
+	}
+
+	@Test
+	public void testEncodedIsACopy() {
+		HawkKey k = HawkKey.of(KEY);
+		k.getEncoded()[0] = 'x';
+		assertEquals(KEY, new String(k.getEncoded(), Charsets.UTF_8));
+	}
+
+	@Test
+	public void testToStringHidesKey() {
+		assertFalse(HawkKey.of(KEY).toString().contains(KEY));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyKeyFails() {
+		HawkKey.of(new byte[0]);
+	}
+
+	@Test
+	public void testSameMacAsStringKey() throws HawkException {
+		HawkContext c1 = HawkContext.request("GET", "/foo", "example.com", 80)
+				.credentials("someId", KEY, Algorithm.SHA_256)
+				.tsAndNonce(1353832234, "j4h3g2").build();
+		HawkContext c2 = HawkContext.request("GET", "/foo", "example.com", 80)
+				.credentials("someId", HawkKey.of(KEY), Algorithm.SHA_256)
+				.tsAndNonce(1353832234, "j4h3g2").build();
+		String mac = c1.createAuthorizationHeader().getMac();
+		assertEquals(mac, c2.createAuthorizationHeader().getMac());
+		assertTrue(c2.isValidMac(mac));
+		assertEquals(KEY, c2.getKey());
+	}
+
+	@Test
+	public void testCredentials() throws HawkException {
+		final HawkKey key = HawkKey.of(KEY);
+		HawkCredentials credentials = new HawkCredentials() {
+			public String getId() {
+				return "someId";
+			}
+
+			public String getPwd() {
+				return KEY;
+			}
+
+			public Algorithm getAlgorithm() {
+				return Algorithm.SHA_256;
+			}
+
+			public HawkKey getHawkKey() {
+				return key;
+			}
+		};
+		HawkContext c = HawkContext.request("GET", "/foo", "example.com", 80)
+				.credentials(credentials).build();
+		assertSame(key, c.getHawkKey());
+		assertSame(key, c.cloneC().build().getHawkKey());
+
+		HawkWwwAuthenticateContext w = HawkWwwAuthenticateContext.ts()
+				.credentials(credentials).build();
+		assertTrue(w.isValidTimestampMac(w.createWwwAuthenticateHeader()
+				.getTsm()));
+	}
+
+}
@@ -0,0 +1,139 @@
+package net.jalg.hawkj;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.jalg.hawkj.ext.HawkCredentials;
+import net.jalg.hawkj.ext.HawkCredentialsResolver;
+import net.jalg.hawkj.ext.HawkCredentialsSequenceResolver;
+import net.jalg.hawkj.util.Charsets;
+
+import org.junit.Test;
+
+public class HawkRequestVerifierTest {
+
+	private static final HawkCredentials CREDENTIALS = new HawkCredentials() {
+		private final HawkKey key = HawkKey.of("someKey");
+
+		public String getId() {
+			return "someId";
+		}
+
+		public String getPwd() {
+			return "someKey";
+		}
+
+		public Algorithm getAlgorithm() {
+			return Algorithm.SHA_256;
+		}
+
+		public HawkKey getHawkKey() {
+			return key;
+		}
+	};
+
+	private static final HawkCredentialsResolver RESOLVER = new HawkCredentialsSequenceResolver() {
+		public HawkCredentials resolveSequence(CharSequence id) {
+			assertFalse(id instanceof String);
+			return "someId".contentEquals(id) ? CREDENTIALS : null;
+		}
+
+		public HawkCredentials resolve(String id) {
+			throw new AssertionError("Sequence lookup expected");
+		}
+	};
+
+	@Test
+	public void testResolveFromStringKeyedMap() throws AuthHeaderParsingException, HawkException {
+		final Map<String, HawkCredentials> credentials = new HashMap<String, HawkCredentials>();
+		credentials.put("someId", CREDENTIALS);
+		HawkRequestVerifier verifier = new HawkRequestVerifier(new HawkCredentialsResolver() {
+			public HawkCredentials resolve(String id) {
+				return credentials.get(id);
+			}
+		});
+		String header = context("someId", "someKey").createAuthorizationHeader().toString();
+		assertTrue(verifier.verify(header, "POST", "/foo?a=1", "example.com", 8080));
+		assertSame(CREDENTIALS, verifier.getCredentials());
+
+		byte[] bytes = header.getBytes(Charsets.UTF_8);
+		assertEquals(HawkStatus.OK, verifier.check(bytes, 0, bytes.length, "POST", "/foo?a=1", "example.com", 8080));
+
+		String other = context("otherId", "someKey").createAuthorizationHeader().toString();
+		assertEquals(HawkStatus.UNKNOWN_ID, verifier.check(other, "POST", "/foo?a=1", "example.com", 8080));
+	}
+
+	private static HawkContext context(String id, String key) {
+		return HawkContext.request("POST", "/foo?a=1", "example.com", 8080)
+				.credentials(id, key, Algorithm.SHA_256).tsAndNonce(1353832234, "j4h3g2")
+				.body("Some body".getBytes(Charsets.UTF_8), "text/plain").ext("some-ext")
+				.build();
+	}
+
+	@Test
+	public void testVerify() throws AuthHeaderParsingException, HawkException {
+		String header = context("someId", "someKey").createAuthorizationHeader().toString();
+		HawkRequestVerifier verifier = new HawkRequestVerifier(RESOLVER);
+		assertTrue(verifier.verify(header, "POST", "/foo?a=1", "example.com", 8080));
+		assertSame(CREDENTIALS, verifier.getCredentials());
+		assertEquals(1353832234, verifier.getHeader().getTs());
+		assertEquals("j4h3g2", verifier.getHeader().getNonce());
+		assertTrue(verifier.isValidHash("Some body".getBytes(Charsets.UTF_8), "text/plain"));
+		assertFalse(verifier.isValidHash("Other body".getBytes(Charsets.UTF_8), "text/plain"));
+
+		assertFalse(verifier.verify(header, "POST", "/foo?a=2", "example.com", 8080));
+		assertNull(verifier.getCredentials());
+		assertFalse(verifier.isValidHash("Some body".getBytes(Charsets.UTF_8), "text/plain"));
+	}
+
+	@Test
+	public void testVerifyBytes() throws AuthHeaderParsingException, HawkException {
+		byte[] header = context("someId", "someKey").createAuthorizationHeader().toString()
+				.getBytes(Charsets.US_ASCII);
+		HawkRequestVerifier verifier = new HawkRequestVerifier(RESOLVER);
+		assertTrue(verifier.verify(header, 0, header.length, "POST", "/foo?a=1", "example.com", 8080));
+		ByteBuffer direct = ByteBuffer.allocateDirect(header.length);
+		direct.put(header).flip();
+		assertTrue(verifier.verify(direct, "POST", "/foo?a=1", "example.com", 8080));
+		assertEquals(0, direct.position());
+	}
+
+	@Test
+	public void testUnknownIdOrWrongKey() throws AuthHeaderParsingException, HawkException {
+		HawkRequestVerifier verifier = new HawkRequestVerifier(RESOLVER);
+		String unknown = context("otherId", "someKey").createAuthorizationHeader().toString();
+		assertFalse(verifier.verify(unknown, "POST", "/foo?a=1", "example.com", 8080));
+		String wrongKey = context("someId", "otherKey").createAuthorizationHeader().toString();
+		assertFalse(verifier.verify(wrongKey, "POST", "/foo?a=1", "example.com", 8080));
+		assertFalse(verifier.verify("Hawk ts=\"1\", nonce=\"abc\", mac=\"x\"", "POST", "/foo?a=1", "example.com", 8080));
+		assertNull(verifier.getCredentials());
+	}
+
+	@Test(expected = AuthHeaderParsingException.class)
+	public void testUnparsableHeader() throws AuthHeaderParsingException, HawkException {
+		new HawkRequestVerifier(RESOLVER).verify("Basic abc=", "GET", "/", "example.com", 80);
+	}
+
+	@Test
+	public void testCheck() throws HawkException {
+		HawkRequestVerifier verifier = new HawkRequestVerifier(RESOLVER);
+		String header = context("someId", "someKey").createAuthorizationHeader().toString();
+		assertEquals(HawkStatus.OK, verifier.check(header, "POST", "/foo?a=1", "example.com", 8080));
+		assertSame(CREDENTIALS, verifier.getCredentials());
+		assertNull(verifier.getMessage());
+		assertEquals(HawkStatus.INVALID_MAC, verifier.check(header, "GET", "/foo?a=1", "example.com", 8080));
+		assertNull(verifier.getCredentials());
+		String unknown = context("otherId", "someKey").createAuthorizationHeader().toString();
+		assertEquals(HawkStatus.UNKNOWN_ID, verifier.check(unknown, "POST", "/foo?a=1", "example.com", 8080));
+		assertEquals(HawkStatus.INVALID_HEADER, verifier.check("Basic abc=", "GET", "/", "example.com", 80));
+		assertNotNull(verifier.getMessage());
+		assertEquals(HawkStatus.INVALID_HEADER, verifier.check("Hawk id=\"someId\", ts=\"1\"", "GET", "/", "example.com", 80));
+		assertEquals(HawkStatus.INVALID_HEADER, verifier.check((CharSequence) null, "GET", "/", "example.com", 80));
+		byte[] bytes = "Hawk id=\"someId\", ts=\"x\"".getBytes(Charsets.US_ASCII);
+		assertEquals(HawkStatus.INVALID_HEADER, verifier.check(bytes, 0, bytes.length, "GET", "/", "example.com", 80));
+	}
+
+}
@@ -0,0 +1,69 @@
+package net.jalg.hawkj;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class HawkResultTest {
+
+	@Test
+	public void testTryAuthorization() {
+		HawkResult<AuthorizationHeader> r = AuthorizationHeader
+				.tryAuthorization("Hawk id=\"someId\", ts=\"1\", nonce=\"abc\", mac=\"m\"");
+		assertTrue(r.isOk());
+		assertEquals(HawkStatus.OK, r.getStatus());
+		assertEquals("someId", r.getValue().getId());
+		assertNull(r.getMessage());
+	}
+
+	@Test
+	public void testTryAuthorizationFailures() {
+		String[] invalid = { "Basic abc=", "Hawk id=\"x", "Hawk ts=\"abc\"", "Hawk abc", "" };
+		for (String value : invalid) {
+			HawkResult<AuthorizationHeader> r = AuthorizationHeader.tryAuthorization(value);
+			assertEquals(value, HawkStatus.INVALID_HEADER, r.getStatus());
+			assertNull(r.getValue());
+			assertNotNull(r.getMessage());
+		}
+		assertFalse(AuthorizationHeader.tryAuthorization(null).isOk());
+	}
+
+	@Test
+	public void testTryWwwAuthenticate() {
+		HawkResult<WwwAuthenticateHeader> r = WwwAuthenticateHeader
+				.tryWwwAuthenticate("Hawk ts=\"1\", tsm=\"abc\", error=\"expired\"");
+		assertTrue(r.isOk());
+		assertEquals("abc", r.getValue().getTsm());
+		assertTrue(r.getValue().toString().contains("error=\"expired\""));
+		assertSame(HawkError.EXPIRED, r.getValue().getError());
+		assertEquals(HawkStatus.INVALID_HEADER,
+				WwwAuthenticateHeader.tryWwwAuthenticate("Hawk error=\"unknown\"").getStatus());
+	}
+
+	@Test
+	public void testReusedBuilderAfterFailure() throws AuthHeaderParsingException {
+		AuthorizationHeader.AuthorizationBuilder b = AuthorizationHeader.authorization();
+		assertFalse(b.tryParse("Basic abc=").isOk());
+		assertTrue(b.tryParse("Hawk id=\"someId\"").isOk());
+		assertEquals("someId", b.build().getId());
+		try {
+			b.parse("Basic abc=");
+			fail();
+		} catch (AuthHeaderParsingException e) {
+			assertTrue(e.getStackTrace().length > 0);
+		}
+	}
+
+	@Test
+	public void testStacklessExceptions() {
+		HawkException.setStackTraceEnabled(false);
+		try {
+			assertEquals(0, new HawkException("x").getStackTrace().length);
+			assertEquals(0, new AuthHeaderParsingException("x").getStackTrace().length);
+		} finally {
+			HawkException.setStackTraceEnabled(true);
+		}
+		assertTrue(new HawkException("x").getStackTrace().length > 0);
+	}
+
+}
@@ -0,0 +1,61 @@
+package net.jalg.hawkj;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+
+import net.jalg.hawkj.ext.HawkCredentials;
+
+import org.junit.Test;
+
+public class HawkWarmupTest {
+
+	@Test
+	public void testRunCompletes() throws HawkException {
+		long millis = HawkWarmup.run(10);
+		assertTrue(millis >= 0);
+	}
+
+	@Test
+	public void testZeroIterationsOnlyResolvesEngines() throws HawkException {
+		assertTrue(HawkWarmup.run(0) >= 0);
+	}
+
+	@Test
+	public void testPrimedCredentialsHitTheCache() throws HawkException {
+		HawkCredentials credentials = new HawkCredentials() {
+			private final HawkKey key = HawkKey.of("primedKey");
+
+			public String getId() {
+				return "primedId";
+			}
+
+			public String getPwd() {
+				return "primedKey";
+			}
+
+			public Algorithm getAlgorithm() {
+				return Algorithm.SHA_256;
+			}
+
+			public HawkKey getHawkKey() {
+				return key;
+			}
+		};
+		MacCache cache = MacCache.getDefault();
+		HawkWarmup.prime(Collections.singletonList(credentials), "application/json");
+		long misses = cache.getMissCount();
+		HawkContext context = HawkContext.request("GET", "/foo", "example.com", 80)
+				.credentials(credentials).tsAndNonce(1, "abc").build();
+		assertTrue(context.isValidMac(context.createAuthorizationHeader().getMac()));
+		HawkWwwAuthenticateContext www = HawkWwwAuthenticateContext.ts().credentials(credentials).build();
+		assertTrue(www.isValidTimestampMac(www.createWwwAuthenticateHeader().getTsm()));
+		assertEquals(misses, cache.getMissCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeIterationsFail() throws HawkException {
+		HawkWarmup.run(-1);
+	}
+
+}
@@ -2,9 +2,13 @@ package net.jalg.hawkj;
 
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
 import net.jalg.hawkj.HawkException;
 import net.jalg.hawkj.HawkContext.HawkContextBuilder;
 
+import net.jalg.hawkj.util.Base64;
 import net.jalg.hawkj.util.Charsets;
 import org.junit.Test;
 
@@ -58,4 +62,97 @@ public class JhawkBodyHashTest {
 
 
 
+	@Test
+	public void testIsValidHash() throws HawkException {
+		byte[] body = "This is a test body of some kind".getBytes(Charsets.UTF_8);
+		HawkContext c = HawkContext.request("POST", "/foo", "example.com", 80)
+				.credentials("someId", "someKey", Algorithm.SHA_256).tsAndNonce(1, "abc")
+				.hash("/CHyeMJ3XrecG754kxnsP1A8X3TY6VjYQD8eCI2wMm4=").build();
+		assertTrue(c.isValidHash(body, "text/plain; charset=utf-8"));
+		assertFalse(c.isValidHash(body, "text/html"));
+		assertFalse(c.isValidHash("Another body".getBytes(Charsets.UTF_8), "text/plain"));
+	}
+
+	@Test
+	public void testIsValidHashWithoutHashIsFalse() throws HawkException {
+		HawkContext c = HawkContext.request("POST", "/foo", "example.com", 80)
+				.credentials("someId", "someKey", Algorithm.SHA_256).tsAndNonce(1, "abc").build();
+		assertFalse(c.isValidHash(new byte[] { 'a' }, "text/plain"));
+	}
+
+	@Test
+	public void testByteBufferBodyHashing() throws HawkException {
+		byte[] body = "This is a test body of some kind".getBytes(Charsets.UTF_8);
+		ByteBuffer direct = ByteBuffer.allocateDirect(body.length + 4);
+		direct.put(new byte[] { 'x', 'x' }).put(body).put(new byte[] { 'y', 'y' });
+		direct.position(2).limit(2 + body.length);
+		assertEquals("/CHyeMJ3XrecG754kxnsP1A8X3TY6VjYQD8eCI2wMm4=",
+				HawkContextBuilder.generateBufferHash(Algorithm.SHA_256, direct, "text/plain"));
+		assertEquals(2, direct.position());
+		assertEquals(HawkContextBuilder.generateHash(Algorithm.SHA_1, body, "text/plain"),
+				HawkContextBuilder.generateBufferHash(Algorithm.SHA_1, ByteBuffer.wrap(body), "text/plain"));
+	}
+
+	@Test
+	public void testByteBufferBodyInBuilder() throws HawkException {
+		byte[] body = "This is a test body of some kind".getBytes(Charsets.UTF_8);
+		ByteBuffer direct = ByteBuffer.allocateDirect(body.length);
+		direct.put(body).flip();
+		HawkContext c = HawkContext.request("POST", "/foo", "example.com", 80)
+				.credentials("someId", "someKey", Algorithm.SHA_256).tsAndNonce(1, "abc")
+				.bodyBuffer(direct, "text/plain").build();
+		assertEquals("/CHyeMJ3XrecG754kxnsP1A8X3TY6VjYQD8eCI2wMm4=", c.getHash());
+		assertTrue(c.isValidHash(direct, "text/plain"));
+		assertEquals(0, direct.position());
+		direct.limit(body.length - 1);
+		assertFalse(c.isValidHash(direct, "text/plain"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyByteBufferThrowsException() throws HawkException {
+		HawkContextBuilder.generateBufferHash(Algorithm.SHA_256, ByteBuffer.allocate(0), "text/plain");
+	}
+
+	@Test
+	public void testIsValidMacFromByteBuffer() throws HawkException {
+		HawkContext c = HawkContext.request("POST", "/foo", "example.com", 80)
+				.credentials("someId", "someKey", Algorithm.SHA_256).tsAndNonce(1, "abc").build();
+		byte[] mac = c.createAuthorizationHeader().getMac().getBytes(Charsets.US_ASCII);
+		ByteBuffer direct = ByteBuffer.allocateDirect(mac.length);
+		direct.put(mac).flip();
+		assertTrue(c.isValidBufferMac(direct));
+		assertEquals(0, direct.position());
+		direct.put(0, (byte) (mac[0] ^ 1));
+		assertFalse(c.isValidBufferMac(direct));
+	}
+
+	@Test
+	public void testMediaType() {
+		assertEquals("text/plain", HawkContextBuilder.mediaType("text/plain"));
+		assertEquals("text/plain", HawkContextBuilder.mediaType(" text/plain ; charset=utf-8"));
+		assertEquals("application/atom", HawkContextBuilder.mediaType("application/atom;type=feed"));
+		assertEquals("", HawkContextBuilder.mediaType(" ;x"));
+	}
+
+	@Test
+	public void testRotatingContentTypesDoNotDisplaceCachedOnes() throws HawkException {
+		PayloadDigestCache cache = new PayloadDigestCache("hawk.1.payload", 2);
+		byte[] body = "abc".getBytes(Charsets.UTF_8);
+		cache.getDigest(Algorithm.SHA_256, "text/plain");
+		for (int i = 0; i < 10; i++) {
+			MessageDigest md = cache.getDigest(Algorithm.SHA_256, "x/y" + i);
+			md.update(body);
+			md.update((byte) '\n');
+			assertEquals(HawkContextBuilder.generateHash(Algorithm.SHA_256, body, "x/y" + i),
+					Base64.encodeBase64String(md.digest()));
+		}
+		assertEquals(2, cache.size());
+		assertFalse(PayloadDigestCache.isCacheable("text/plain\u0000"));
+		assertFalse(PayloadDigestCache.isCacheable("text"));
+		assertFalse(PayloadDigestCache.isCacheable("a/b/c"));
+		assertTrue(PayloadDigestCache.isCacheable("application/vnd.api+json"));
+		cache.getDigest(Algorithm.SHA_256, "text");
+		assertEquals(2, cache.size());
+	}
+
 }
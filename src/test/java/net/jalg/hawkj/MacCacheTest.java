@@ -0,0 +1,116 @@
+package net.jalg.hawkj;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Mac;
+
+import net.jalg.hawkj.util.Charsets;
+
+import org.junit.Test;
+
+public class MacCacheTest {
+
+	private static final byte[] DATA = "hawk.1.header\n".getBytes(Charsets.UTF_8);
+
+	@Test
+	public void testHitAndMissCounts() throws HawkException {
+		MacCache cache = new MacCache(10);
+		cache.getMac("someId", "someKey", Algorithm.SHA_256);
+		cache.getMac("someId", "someKey", Algorithm.SHA_256);
+		cache.getMac("someId", "someKey", Algorithm.SHA_1);
+		assertEquals(2, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testChangedKeyIsAMiss() throws HawkException {
+		MacCache cache = new MacCache(10);
+		cache.getMac("someId", "someKey", Algorithm.SHA_256);
+		cache.getMac("someId", "otherKey", Algorithm.SHA_256);
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() throws HawkException {
+		MacCache cache = new MacCache(2);
+		cache.getMac("a", "someKey", Algorithm.SHA_256);
+		cache.getMac("b", "someKey", Algorithm.SHA_256);
+		cache.getMac("a", "someKey", Algorithm.SHA_256);
+		cache.getMac("c", "someKey", Algorithm.SHA_256);
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		cache.getMac("a", "someKey", Algorithm.SHA_256);
+		assertEquals(2, cache.getHitCount());
+		cache.getMac("b", "someKey", Algorithm.SHA_256);
+		assertEquals(4, cache.getMissCount());
+	}
+
+	@Test
+	public void testClonesAreIndependent() throws HawkException {
+		MacCache cache = new MacCache(10);
+		Mac m1 = cache.getMac("someId", "someKey", Algorithm.SHA_256);
+		m1.update(DATA);
+		Mac m2 = cache.getMac("someId", "someKey", Algorithm.SHA_256);
+		m2.update(DATA);
+		assertArrayEquals(m1.doFinal(), m2.doFinal());
+	}
+
+	@Test
+	public void testPrefixMidstate() throws HawkException {
+		MacCache cache = new MacCache(10);
+		byte[] suffix = "1353832234\nj4h3g2\n".getBytes(Charsets.UTF_8);
+		Mac full = cache.getMac("someId", "someKey", Algorithm.SHA_256);
+		full.update(DATA);
+		full.update(suffix);
+		Mac midstate = cache.getMac("someId", "someKey", Algorithm.SHA_256, "hawk.1.header\n");
+		midstate.update(suffix);
+		assertArrayEquals(full.doFinal(), midstate.doFinal());
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testConcurrentUseStaysBounded() throws Exception {
+		final MacCache cache = new MacCache(8);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int t = 0; t < 4; t++) {
+				final int seed = t;
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						for (int i = 0; i < 500; i++) {
+							String id = "id" + ((i * 7 + seed) % 12);
+							Mac mac = cache.getMac(id, "someKey", Algorithm.SHA_256);
+							assertArrayEquals(cache.getMac(id, "someKey", Algorithm.SHA_256).doFinal(DATA),
+									mac.doFinal(DATA));
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> f : futures) {
+				f.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(cache.size() <= 8);
+		assertEquals(4000, cache.getHitCount() + cache.getMissCount());
+		// Misses that lost the race to add an entry add nothing
+		assertTrue(cache.getEvictionCount() <= cache.getMissCount() - cache.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testZeroSizeFails() {
+		new MacCache(0);
+	}
+
+}
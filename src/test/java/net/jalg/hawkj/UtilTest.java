@@ -2,6 +2,8 @@ package net.jalg.hawkj;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+
 
 import net.jalg.hawkj.Algorithm;
 import net.jalg.hawkj.AuthHeaderParsingException;
@@ -12,6 +14,8 @@ import net.jalg.hawkj.HawkContext.HawkContextBuilder_C;
 import net.jalg.hawkj.HawkContext.HawkContextBuilder_D;
 import net.jalg.hawkj.HawkException;
 import net.jalg.hawkj.Util;
+import net.jalg.hawkj.util.Base64;
+import net.jalg.hawkj.util.Charsets;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -72,5 +76,42 @@ public class UtilTest {
 		assertFalse(Util.fixedTimeEqual("foo2","foo1"));
 		
 	}
+	@Test
+	public void testFixedTimeEqualBase64() {
+		byte[] b = "any carnal pleasure".getBytes(Charsets.UTF_8);
+		for (int len = 0; len <= b.length; len++) {
+			byte[] prefix = Arrays.copyOf(b, len);
+			String encoded = new String(Base64.encodeBase64(prefix), Charsets.UTF_8);
+			assertTrue(Util.fixedTimeEqualBase64(b, len, encoded));
+			assertFalse(Util.fixedTimeEqualBase64(b, len, encoded + "A"));
+			if (len > 0) {
+				char[] tampered = encoded.toCharArray();
+				tampered[tampered.length - 1] = tampered[tampered.length - 1] == 'A' ? 'B' : 'A';
+				assertFalse(Util.fixedTimeEqualBase64(b, len, new String(tampered)));
+			}
+		}
+	}
+
+	@Test
+	public void testFixedTimeEqualBase64RejectsUnpaddedEncoding() {
+		byte[] b = { 1, 2 };
+		assertTrue(Util.fixedTimeEqualBase64(b, 2, "AQI="));
+		assertFalse(Util.fixedTimeEqualBase64(b, 2, "AQI"));
+		assertFalse(Util.fixedTimeEqualBase64(b, 2, "AQJ="));
+	}
+
+	@Test
+	public void testParseNonNegativeLong() {
+		assertEquals(0, Util.parseNonNegativeLong("0", 0, 1));
+		assertEquals(1353832234, Util.parseNonNegativeLong("ts=1353832234,", 3, 13));
+		assertEquals(Long.MAX_VALUE, Util.parseNonNegativeLong(String.valueOf(Long.MAX_VALUE), 0, 19));
+		assertEquals(7, Util.parseNonNegativeLong("0000000000000000000000007", 0, 25));
+		assertEquals(-1, Util.parseNonNegativeLong("9223372036854775808", 0, 19));
+		assertEquals(-1, Util.parseNonNegativeLong("99999999999999999999", 0, 20));
+		assertEquals(-1, Util.parseNonNegativeLong("", 0, 0));
+		assertEquals(-1, Util.parseNonNegativeLong("-1", 0, 2));
+		assertEquals(-1, Util.parseNonNegativeLong("+1", 0, 2));
+		assertEquals(-1, Util.parseNonNegativeLong("12a", 0, 3));
+		assertEquals(-1, Util.parseNonNegativeLong("1 ", 0, 2));
+	}
 }
-	
@@ -0,0 +1,128 @@
+package net.jalg.hawkj;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class WwwAuthenticateChallengeTest {
+
+	@Test
+	public void testHawkBetweenOtherChallenges() throws AuthHeaderParsingException {
+		WwwAuthenticateHeader h = WwwAuthenticateHeader
+				.hawkChallenge("Bearer realm=\"a, Hawk b\", error=invalid_token, Hawk ts=\"1365741469\", tsm=\"h/Ff6XI1euObD78ZNflapvLKXGuaw1RiLI4Q6Q5sAbM=\", Basic realm=\"c\"");
+		assertNotNull(h);
+		assertEquals(1365741469, h.getTs());
+		assertEquals("h/Ff6XI1euObD78ZNflapvLKXGuaw1RiLI4Q6Q5sAbM=", h.getTsm());
+	}
+
+	@Test
+	public void testHawkFirstAndLast() throws AuthHeaderParsingException {
+		assertEquals(1, WwwAuthenticateHeader.hawkChallenge(
+				"Hawk ts=\"1\", tsm=\"x\", Basic realm=\"c\"").getTs());
+		assertEquals(2, WwwAuthenticateHeader.hawkChallenge(
+				"Basic realm=\"c\", HAWK ts=\"2\"").getTs());
+		assertEquals(3, WwwAuthenticateHeader.hawkChallenge("hawk ts=3").getTs());
+	}
+
+	@Test
+	public void testHawkWithoutParameters() throws AuthHeaderParsingException {
+		WwwAuthenticateHeader h = WwwAuthenticateHeader
+				.hawkChallenge("Basic realm=\"c\", Hawk, Bearer");
+		assertNotNull(h);
+		assertEquals(0, h.getTs());
+	}
+
+	@Test
+	public void testToken68Challenges() throws AuthHeaderParsingException {
+		assertEquals(4, WwwAuthenticateHeader.hawkChallenge(
+				"Negotiate dXNlcg==, Hawk ts=\"4\", Other abc").getTs());
+		assertEquals(5, WwwAuthenticateHeader.hawkChallenge(
+				"Negotiate a/b+c, Hawk ts=\"5\"").getTs());
+	}
+
+	@Test
+	public void testSchemePrefixDoesNotMatch() throws AuthHeaderParsingException {
+		assertNull(WwwAuthenticateHeader.hawkChallenge("Hawkish ts=\"1\""));
+		assertNull(WwwAuthenticateHeader.hawkChallenge("Basic hawk=\"1\""));
+		assertNull(WwwAuthenticateHeader.hawkChallenge("Basic realm=\"x\", Bearer"));
+		assertNull(WwwAuthenticateHeader.hawkChallenge(""));
+	}
+
+	@Test
+	public void testMultipleHeaders() throws AuthHeaderParsingException {
+		WwwAuthenticateHeader h = WwwAuthenticateHeader.hawkChallenge(Arrays
+				.asList("Basic realm=\"c\"", "Bearer, Hawk ts=\"6\"",
+						"Hawk ts=\"7\""));
+		assertEquals(6, h.getTs());
+		assertNull(WwwAuthenticateHeader.hawkChallenge(Arrays
+				.asList("Basic realm=\"c\"", "Bearer")));
+	}
+
+	@Test
+	public void testEscapedQuoteInOtherChallenge() throws AuthHeaderParsingException {
+		WwwAuthenticateHeader h = WwwAuthenticateHeader
+				.hawkChallenge("Custom text=\"say \\\"Hawk ts=9\\\", please\", Hawk ts=\"8\"");
+		assertEquals(8, h.getTs());
+	}
+
+	@Test(expected = AuthHeaderParsingException.class)
+	public void testUnterminatedQuote() throws AuthHeaderParsingException {
+		WwwAuthenticateHeader.hawkChallenge("Basic realm=\"c, Hawk ts=1");
+	}
+
+	@Test(expected = AuthHeaderParsingException.class)
+	public void testMalformedHawkChallenge() throws AuthHeaderParsingException {
+		WwwAuthenticateHeader.hawkChallenge("Basic realm=\"c\", Hawk ts=\"x\"");
+	}
+
+	@Test
+	public void testView() throws Exception {
+		WwwAuthenticateHeaderView view = new WwwAuthenticateHeaderView();
+		assertTrue(view.parseHawkChallenge("Basic realm=\"c\", Hawk ts=\"10\", error=\"expired\", Bearer"));
+		assertEquals(10, view.getTs());
+		assertSame(HawkError.EXPIRED, view.getError());
+
+		assertFalse(view.parseHawkChallenge("Basic realm=\"c\""));
+		assertFalse(view.hasTs());
+		assertNull(view.getHeaderValue());
+
+		byte[] bytes = "xxBearer, Hawk ts=\"11\", tsm=\"abc\"yy"
+				.getBytes(StandardCharsets.ISO_8859_1);
+		assertTrue(view.parseHawkChallenge(bytes, 2, bytes.length - 4));
+		assertEquals(11, view.getTs());
+		assertEquals("abc", view.getTsm());
+	}
+
+	@Test
+	public void testViewTsm() throws Exception {
+		WwwAuthenticateHeader challenge = HawkWwwAuthenticateContext.ts()
+				.credentials("someId", "someKey", Algorithm.SHA_256).build()
+				.createWwwAuthenticateHeader();
+		WwwAuthenticateHeaderView view = new WwwAuthenticateHeaderView();
+		assertTrue(view.parseHawkChallenge("Basic realm=\"c\", " + challenge
+				+ ", Bearer"));
+		assertTrue(view.isValidTsm("someId", HawkKey.of("someKey"),
+				Algorithm.SHA_256));
+	}
+
+	@Test(expected = AuthHeaderParsingException.class)
+	public void testHeaderLength() throws AuthHeaderParsingException {
+		StringBuilder sb = new StringBuilder("Basic realm=\"");
+		while (sb.length() <= AuthHeaderLimits.DEFAULT_MAX_HEADER_LENGTH) {
+			sb.append("0123456789");
+		}
+		sb.append("\", Hawk ts=\"1\"");
+		WwwAuthenticateHeader.hawkChallenge(sb.toString());
+	}
+
+	@Test(expected = AuthHeaderParsingException.class)
+	public void testViewHeaderLength() throws AuthHeaderParsingException {
+		WwwAuthenticateHeaderView view = new WwwAuthenticateHeaderView()
+				.setLimits(AuthHeaderLimits.builder().maxHeaderLength(16).build());
+		view.parseHawkChallenge("Basic realm=\"c\", Hawk ts=\"1\"");
+	}
+
+}
@@ -2,6 +2,8 @@ package net.jalg.hawkj;
 
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
+
 import net.jalg.hawkj.Algorithm;
 import net.jalg.hawkj.AuthorizationHeader;
 import net.jalg.hawkj.HawkContext;
@@ -74,6 +76,20 @@ public class WwwAuthenticateHeaderGenerationTest {
 //
 //	}
 
-
+	@Test
+	public void testWriteTo() throws Exception {
+		WwwAuthenticateHeader h = WwwAuthenticateHeader.wwwAuthenticate().ts(1353832234).tsm("abc")
+				.error(HawkError.EXPIRED).build();
+		String expected = "Hawk ts=\"1353832234\",tsm=\"abc\",error=\"expired\"";
+		assertEquals(expected, h.toString());
+		assertEquals(expected.length(), h.length());
+		StringBuilder sb = new StringBuilder();
+		h.writeTo(sb);
+		assertEquals(expected, sb.toString());
+		ByteBuffer buf = ByteBuffer.allocate(h.length());
+		h.writeTo(buf);
+		assertFalse(buf.hasRemaining());
+		assertEquals(expected, new String(buf.array(), "ISO-8859-1"));
+	}
 
 }
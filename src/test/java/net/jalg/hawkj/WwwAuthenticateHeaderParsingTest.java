@@ -1,6 +1,7 @@
 package net.jalg.hawkj;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import org.junit.Test;
 
@@ -84,6 +85,25 @@ public class WwwAuthenticateHeaderParsingTest {
 	}
 	
 	
+	@Test
+	public void testParsingSignedTsFails() {
+		assertFalse(WwwAuthenticateHeader.tryWwwAuthenticate("Hawk ts=\"-1\"").isOk());
+	}
+
+	@Test(expected = AuthHeaderParsingException.class)
+	public void testNullParamValueFails() throws AuthHeaderParsingException {
+		WwwAuthenticateHeader.wwwAuthenticate().param("ts", null);
+	}
+
+	@Test
+	public void testReusedBuilderIsReset() throws AuthHeaderParsingException {
+		WwwAuthenticateHeader.WwwAuthenticateBuilder b = WwwAuthenticateHeader.wwwAuthenticate();
+		assertEquals("abcdefghijk", b.parse("Hawk ts=\"1\",tsm=\"abcdefghijk\"").build().getTsm());
+		WwwAuthenticateHeader h = b.parse("Hawk error=\"expired\"").build();
+		assertEquals("Hawk error=\"expired\"", h.toString());
+		assertEquals(0, h.getTs());
+	}
+	
 //	@Test
 //	public void testHeaderGeneration1() throws HawkException, AuthHeaderParsingException {
 //		
@@ -0,0 +1,78 @@
+package net.jalg.hawkj;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import net.jalg.hawkj.util.Charsets;
+
+import org.junit.Test;
+
+public class WwwAuthenticateHeaderViewTest {
+
+	private static String header() {
+		return HawkWwwAuthenticateContext.ts().credentials("someId", "someKey", Algorithm.SHA_256)
+				.build().createWwwAuthenticateHeader().toString();
+	}
+
+	@Test
+	public void testFields() throws AuthHeaderParsingException {
+		WwwAuthenticateHeaderView v = WwwAuthenticateHeaderView.wwwAuthenticate("Hawk ts=\"1\", tsm=\"abc\"");
+		assertEquals(1, v.getTs());
+		assertEquals("abc", v.getTsm());
+		assertEquals("abc", v.getTsmSequence().toString());
+		assertFalse(v.hasError());
+		assertEquals("Hawk ts=\"1\",tsm=\"abc\"", v.toString());
+
+		v.parse("Hawk error=\"expired\"");
+		assertSame(HawkError.EXPIRED, v.getError());
+		assertFalse(v.hasTs());
+		assertFalse(v.hasTsm());
+	}
+
+	@Test
+	public void testValidTsm() throws AuthHeaderParsingException {
+		String hv = header();
+		WwwAuthenticateHeaderView v = new WwwAuthenticateHeaderView().parse(hv);
+		HawkKey key = HawkKey.of("someKey");
+		assertTrue(v.isValidTsm("someId", key, Algorithm.SHA_256));
+		assertFalse(v.isValidTsm("someId", HawkKey.of("otherKey"), Algorithm.SHA_256));
+
+		byte[] bytes = hv.getBytes(Charsets.US_ASCII);
+		assertTrue(v.parse(bytes, 0, bytes.length).isValidTsm("someId", key, Algorithm.SHA_256));
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes).flip();
+		assertTrue(v.parse(direct).isValidTsm("someId", key, Algorithm.SHA_256));
+		assertEquals(0, direct.position());
+		assertFalse(v.parse("Hawk ts=\"1353832234\"").isValidTsm("someId", key, Algorithm.SHA_256));
+	}
+
+	@Test
+	public void testTryParse() {
+		WwwAuthenticateHeaderView v = new WwwAuthenticateHeaderView();
+		assertEquals(HawkStatus.OK, v.tryParse("Hawk ts=\"1\""));
+		assertEquals(HawkStatus.INVALID_HEADER, v.tryParse("Hawk error=\"unknown\""));
+		assertEquals(HawkStatus.INVALID_HEADER, v.tryParse("Basic abc="));
+		assertEquals(HawkStatus.INVALID_HEADER, v.tryParse(null));
+	}
+
+	@Test
+	public void testBuilderParsesBytes() throws AuthHeaderParsingException {
+		byte[] bytes = "Hawk ts=\"5\", tsm=\"abc\", error=\"expired\"".getBytes(Charsets.US_ASCII);
+		WwwAuthenticateHeader h = WwwAuthenticateHeader.wwwAuthenticate().parse(bytes, 0, bytes.length).build();
+		assertEquals(5, h.getTs());
+		assertEquals("abc", h.getTsm());
+		assertSame(HawkError.EXPIRED, h.getError());
+	}
+
+	@Test
+	public void testErrorLookup() {
+		assertSame(HawkError.EXPIRED, HawkError.fromString("expired"));
+		assertSame(HawkError.EXPIRED, HawkError.fromCode("error=expired", 6, 13));
+		assertNull(HawkError.fromString("Expired"));
+		assertNull(HawkError.fromString("expire"));
+		assertNull(HawkError.fromString("a-much-longer-code"));
+		assertNull(HawkError.fromString(null));
+	}
+
+}